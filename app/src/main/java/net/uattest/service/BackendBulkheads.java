@@ -0,0 +1,101 @@
+package net.uattest.service;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BackendBulkheads {
+    private final int maxConcurrent;
+    private final int queueLimit;
+    private final int maxInFlight;
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public BackendBulkheads(int maxConcurrent, int queueLimit, int maxInFlight) {
+        this.maxConcurrent = maxConcurrent;
+        this.queueLimit = queueLimit;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public void execute(String backendId, Runnable task) throws RejectedExecutionException {
+        bulkheads.computeIfAbsent(backendId, Bulkhead::new).execute(task);
+    }
+
+    /**
+     * Reserves one of the backend's asynchronous HTTP call slots. Async calls do not hold a
+     * bulkhead thread, so this bounds how many can be outstanding; release with
+     * {@link #releaseInFlight}.
+     */
+    public void acquireInFlight(String backendId) throws RejectedExecutionException {
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(backendId, Bulkhead::new);
+        if (!bulkhead.inFlight.tryAcquire()) {
+            bulkhead.rejected.incrementAndGet();
+            throw new RejectedExecutionException("Too many in-flight calls to " + backendId);
+        }
+    }
+
+    public void releaseInFlight(String backendId) {
+        Bulkhead bulkhead = bulkheads.get(backendId);
+        if (bulkhead != null) {
+            bulkhead.inFlight.release();
+        }
+    }
+
+    public void shutdown() {
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            bulkhead.executor.shutdownNow();
+        }
+        bulkheads.clear();
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("Backend bulkheads (maxConcurrent=" + maxConcurrent + " queueLimit=" + queueLimit
+                + " maxInFlight=" + maxInFlight + "):");
+        for (Map.Entry<String, Bulkhead> entry : bulkheads.entrySet()) {
+            Bulkhead bulkhead = entry.getValue();
+            pw.println("  " + entry.getKey()
+                    + " active=" + bulkhead.executor.getActiveCount()
+                    + " queued=" + bulkhead.executor.getQueue().size()
+                    + " inFlight=" + (maxInFlight - bulkhead.inFlight.availablePermits())
+                    + " completed=" + bulkhead.executor.getCompletedTaskCount()
+                    + " rejected=" + bulkhead.rejected.get());
+        }
+    }
+
+    private class Bulkhead {
+        final ThreadPoolExecutor executor;
+        final AtomicLong rejected = new AtomicLong();
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+
+        Bulkhead(String backendId) {
+            executor = new ThreadPoolExecutor(
+                    maxConcurrent,
+                    maxConcurrent,
+                    30,
+                    TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueLimit),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "ua-backend-" + backendId);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy()
+            );
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        void execute(Runnable task) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                throw e;
+            }
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package net.uattest.service;
 
+import java.util.Collections;
+import java.util.Set;
+
 public class BackendInfo {
     public final String backendId;
     public final String url;
+    public final Set<String> capabilities;
 
     public BackendInfo(String backendId, String url) {
+        this(backendId, url, Collections.emptySet());
+    }
+
+    public BackendInfo(String backendId, String url, Set<String> capabilities) {
         this.backendId = backendId;
         this.url = url;
+        this.capabilities = capabilities;
     }
 }
@@ -0,0 +1,74 @@
+package net.uattest.service;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BackendRegistry {
+    private final Context context;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+    public BackendRegistry(Context context) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = current.get();
+        if (snapshot != null && snapshot.version == BackendStore.generation()) {
+            return snapshot;
+        }
+        return reload();
+    }
+
+    public BackendEntry find(String backendId) {
+        return backendId == null ? null : snapshot().byId.get(backendId);
+    }
+
+    private synchronized Snapshot reload() {
+        long version = BackendStore.generation();
+        Snapshot snapshot = current.get();
+        if (snapshot != null && snapshot.version == version) {
+            return snapshot;
+        }
+        snapshot = new Snapshot(version, BackendStore.load(context));
+        for (BackendEntry entry : snapshot.entries) {
+            UaHttp.setCapabilities(entry.url, entry.capabilities);
+        }
+        current.set(snapshot);
+        return snapshot;
+    }
+
+    public static class Snapshot {
+        public final long version;
+        public final List<BackendEntry> entries;
+        public final List<String> enabledIds;
+        private final Map<String, BackendEntry> byId;
+
+        Snapshot(long version, List<BackendEntry> loaded) {
+            this.version = version;
+            Map<String, BackendEntry> index = new HashMap<>();
+            List<String> ids = new ArrayList<>();
+            for (BackendEntry entry : loaded) {
+                if (entry.backendId == null) {
+                    continue;
+                }
+                index.put(entry.backendId, entry);
+                if (entry.enabled) {
+                    ids.add(entry.backendId);
+                }
+            }
+            this.entries = Collections.unmodifiableList(new ArrayList<>(loaded));
+            this.enabledIds = Collections.unmodifiableList(ids);
+            this.byId = index;
+        }
+
+        public BackendEntry get(String backendId) {
+            return backendId == null ? null : byId.get(backendId);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package net.uattest.service;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+public class BackendSelector {
+    public static final String AUTO = "auto";
+
+    private static final double ALPHA = 0.2;
+    private static final double DEFAULT_LATENCY_MS = 500;
+    private static final double ERROR_PENALTY = 4;
+    private static final double UNREACHABLE_PENALTY = 10;
+    private static final long REORDER_INTERVAL_MS = 1_000;
+
+    private final LongSupplier clock;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private volatile Ordering ordering;
+
+    public BackendSelector(LongSupplier elapsedClock) {
+        this.clock = elapsedClock;
+    }
+
+    public void record(String backendId, long latencyMs, boolean success) {
+        stats.computeIfAbsent(backendId, id -> new Stats()).record(latencyMs, success);
+    }
+
+    public List<String> order(BackendRegistry.Snapshot snapshot) {
+        long now = clock.getAsLong();
+        Ordering current = ordering;
+        if (current != null && current.version == snapshot.version && now - current.computedAt < REORDER_INTERVAL_MS) {
+            return current.ids;
+        }
+        List<BackendEntry> enabled = new ArrayList<>();
+        for (String id : snapshot.enabledIds) {
+            enabled.add(snapshot.get(id));
+        }
+        Map<String, Double> scores = new HashMap<>();
+        for (BackendEntry entry : enabled) {
+            scores.put(entry.backendId, score(entry));
+        }
+        enabled.sort(Comparator.comparingDouble(entry -> scores.get(entry.backendId)));
+        List<String> ids = new ArrayList<>(enabled.size());
+        for (BackendEntry entry : enabled) {
+            ids.add(entry.backendId);
+        }
+        current = new Ordering(snapshot.version, now, Collections.unmodifiableList(ids));
+        ordering = current;
+        return current.ids;
+    }
+
+    public BackendEntry best(BackendRegistry.Snapshot snapshot) {
+        List<String> ids = order(snapshot);
+        return ids.isEmpty() ? null : snapshot.get(ids.get(0));
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("Backend latency (EWMA):");
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats s = entry.getValue();
+            synchronized (s) {
+                pw.println("  " + entry.getKey()
+                        + " latencyMs=" + Math.round(s.latencyMs)
+                        + " errorRate=" + String.format("%.3f", s.errorRate)
+                        + " samples=" + s.samples);
+            }
+        }
+    }
+
+    private double score(BackendEntry entry) {
+        double latency = DEFAULT_LATENCY_MS;
+        double errorRate = 0;
+        Stats s = stats.get(entry.backendId);
+        if (s != null) {
+            synchronized (s) {
+                if (s.samples > 0) {
+                    latency = s.latencyMs;
+                    errorRate = s.errorRate;
+                }
+            }
+        }
+        double score = latency * (1 + ERROR_PENALTY * errorRate);
+        if ("unreachable".equals(entry.lastStatus) || !CircuitBreaker.CLOSED.equals(UaHttp.circuitState(entry.url))) {
+            score *= UNREACHABLE_PENALTY;
+        }
+        return score;
+    }
+
+    private static class Stats {
+        double latencyMs;
+        double errorRate;
+        long samples;
+
+        synchronized void record(long latency, boolean success) {
+            if (samples == 0) {
+                latencyMs = latency;
+                errorRate = success ? 0 : 1;
+            } else {
+                latencyMs += ALPHA * (latency - latencyMs);
+                errorRate += ALPHA * ((success ? 0 : 1) - errorRate);
+            }
+            samples++;
+        }
+    }
+
+    private static class Ordering {
+        final long version;
+        final long computedAt;
+        final List<String> ids;
+
+        Ordering(long version, long computedAt, List<String> ids) {
+            this.version = version;
+            this.computedAt = computedAt;
+            this.ids = ids;
+        }
+    }
+}
@@ -2,62 +2,232 @@ package net.uattest.service;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class BackendStore {
-    private static final String PREFS_NAME = "ua_backends";
-    private static final String KEY_LIST = "backend_list";
+    private static final String FILE_NAME = "backends.db";
+    private static final String LEGACY_PREFS_NAME = "ua_backends";
+    private static final String LEGACY_KEY_LIST = "backend_list";
+    private static final long COMPACT_MIN_BYTES = 16 * 1024;
+    private static final int COMPACT_RATIO = 4;
+
+    private static final AtomicLong generation = new AtomicLong();
+    private static final Object lock = new Object();
+    private static final Map<String, BackendEntry> entries = new LinkedHashMap<>();
+    private static File loadedFile;
+    private static long loadedLength = -1;
+    private static long loadedModified;
+    private static long compactedLength;
+
+    private interface Operation<T> {
+        T run(File file) throws IOException;
+    }
+
+    public static long generation() {
+        return generation.get();
+    }
 
     public static List<BackendEntry> load(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        String raw = prefs.getString(KEY_LIST, null);
-        if (raw == null || raw.isEmpty()) {
-            List<BackendEntry> defaults = new ArrayList<>();
+        List<BackendEntry> result = locked(context, file -> copies());
+        return result != null ? result : new ArrayList<>();
+    }
+
+    public static void put(Context context, BackendEntry entry) {
+        BackendEntry copy = entry.copy();
+        locked(context, file -> {
+            entries.put(copy.url, copy);
+            append(file, BackendLogCodec.encodePut(copy));
+            generation.incrementAndGet();
+            return null;
+        });
+    }
+
+    /** Atomically applies {@code mutation} to the stored entry for {@code url}. */
+    public static boolean update(Context context, String url, Consumer<BackendEntry> mutation) {
+        Boolean updated = locked(context, file -> {
+            BackendEntry current = entries.get(url);
+            if (current == null) {
+                return false;
+            }
+            BackendEntry next = current.copy();
+            mutation.accept(next);
+            next.url = url;
+            entries.put(url, next);
+            append(file, BackendLogCodec.encodePut(next));
+            generation.incrementAndGet();
+            return true;
+        });
+        return Boolean.TRUE.equals(updated);
+    }
+
+    public static boolean updateStatus(Context context, String url, String status, long checkedAt) {
+        Boolean updated = locked(context, file -> {
+            BackendEntry current = entries.get(url);
+            if (current == null) {
+                return false;
+            }
+            if (Objects.equals(current.lastStatus, status) && current.lastCheckedAt == checkedAt) {
+                return true;
+            }
+            current.lastStatus = status;
+            current.lastCheckedAt = checkedAt;
+            append(file, BackendLogCodec.encodeStatus(url, status, checkedAt));
+            generation.incrementAndGet();
+            return true;
+        });
+        return Boolean.TRUE.equals(updated);
+    }
+
+    public static void remove(Context context, String url) {
+        locked(context, file -> {
+            if (entries.containsKey(url)) {
+                entries.remove(url);
+                append(file, BackendLogCodec.encodeRemove(url));
+                generation.incrementAndGet();
+            }
+            return null;
+        });
+    }
+
+    private static <T> T locked(Context context, Operation<T> operation) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        synchronized (lock) {
+            // A separate lock file, since compaction replaces the data file.
+            try (RandomAccessFile lockFile = new RandomAccessFile(new File(file.getPath() + ".lock"), "rw")) {
+                FileLock fileLock = lockFile.getChannel().lock();
+                try {
+                    if (!file.exists()) {
+                        migrate(context, file);
+                    }
+                    refresh(context, file);
+                    return operation.run(file);
+                } finally {
+                    fileLock.release();
+                }
+            } catch (IOException e) {
+                Log.w("UAService", "Backend store I/O failed", e);
+                // The cache may be ahead of the file now; re-read it on the next access.
+                loadedFile = null;
+                return null;
+            }
+        }
+    }
+
+    private static void migrate(Context context, File file) throws IOException {
+        SharedPreferences prefs = context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE);
+        String raw = prefs.getString(LEGACY_KEY_LIST, null);
+        entries.clear();
+        if (raw != null && !raw.isEmpty()) {
+            for (BackendEntry entry : BackendCodec.decode(raw)) {
+                entries.put(entry.url, entry);
+            }
+        } else {
             for (String url : ConfigReader.loadDefaultUrls(context)) {
-                defaults.add(new BackendEntry(null, url, true));
-            }
-            save(context, defaults);
-            return defaults;
-        }
-        List<BackendEntry> entries = new ArrayList<>();
-        try {
-            JSONArray arr = new JSONArray(raw);
-            for (int i = 0; i < arr.length(); i++) {
-                JSONObject obj = arr.getJSONObject(i);
-                BackendEntry entry = new BackendEntry(
-                        obj.optString("backendId", null),
-                        obj.getString("url"),
-                        obj.optBoolean("enabled", true)
-                );
-                entry.lastStatus = obj.optString("lastStatus", null);
-                entry.lastCheckedAt = obj.optLong("lastCheckedAt", 0);
-                entries.add(entry);
-            }
-        } catch (Exception ignored) {
-        }
-        return entries;
-    }
-
-    public static void save(Context context, List<BackendEntry> entries) {
-        JSONArray arr = new JSONArray();
-        for (BackendEntry entry : entries) {
-            JSONObject obj = new JSONObject();
+                entries.put(url, new BackendEntry(null, url, true));
+            }
+        }
+        compact(file);
+        if (raw != null) {
+            prefs.edit().remove(LEGACY_KEY_LIST).commit();
+        }
+        generation.incrementAndGet();
+    }
+
+    private static void refresh(Context context, File file) throws IOException {
+        if (file.equals(loadedFile) && file.length() == loadedLength && file.lastModified() == loadedModified) {
+            return;
+        }
+        Map<String, BackendEntry> replayed = new LinkedHashMap<>();
+        boolean readable = true;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            byte[] data = new byte[(int) raf.length()];
+            raf.readFully(data);
+            int valid = data.length;
             try {
-                obj.put("backendId", entry.backendId);
-                obj.put("url", entry.url);
-                obj.put("enabled", entry.enabled);
-                obj.put("lastStatus", entry.lastStatus);
-                obj.put("lastCheckedAt", entry.lastCheckedAt);
-            } catch (Exception ignored) {
+                valid = BackendLogCodec.replay(data, data.length, replayed);
+            } catch (IOException e) {
+                Log.w("UAService", "Setting aside unreadable backend store", e);
+                readable = false;
+            }
+            if (readable && valid < data.length) {
+                // Torn or corrupt tail from an interrupted append; drop it so new records follow valid ones.
+                Log.w("UAService", "Truncating backend store from " + data.length + " to " + valid + " bytes");
+                raf.setLength(valid);
+            }
+        }
+        if (!readable) {
+            // A bad header or a store written by a newer version: keep the file and start from the defaults.
+            File bad = new File(file.getPath() + ".bad");
+            bad.delete();
+            if (!file.renameTo(bad)) {
+                throw new IOException("Failed to set aside " + file);
+            }
+            migrate(context, file);
+            return;
+        }
+        entries.clear();
+        entries.putAll(replayed);
+        remember(file);
+        compactedLength = BackendLogCodec.HEADER_BYTES;
+        for (BackendEntry entry : entries.values()) {
+            compactedLength += BackendLogCodec.encodePut(entry).length;
+        }
+        generation.incrementAndGet();
+    }
+
+    /** Appends a record for a change already applied to {@code entries}; may compact instead. */
+    private static void append(File file, byte[] record) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(record);
+        }
+        remember(file);
+        if (loadedLength > Math.max(COMPACT_MIN_BYTES, COMPACT_RATIO * compactedLength)) {
+            compact(file);
+        }
+    }
+
+    private static void compact(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(BackendLogCodec.header());
+            for (BackendEntry entry : entries.values()) {
+                out.write(BackendLogCodec.encodePut(entry));
             }
-            arr.put(obj);
+            out.flush();
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+        remember(file);
+        compactedLength = loadedLength;
+    }
+
+    private static void remember(File file) {
+        loadedFile = file;
+        loadedLength = file.length();
+        loadedModified = file.lastModified();
+    }
+
+    private static List<BackendEntry> copies() {
+        List<BackendEntry> result = new ArrayList<>(entries.size());
+        for (BackendEntry entry : entries.values()) {
+            result.add(entry.copy());
         }
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        prefs.edit().putString(KEY_LIST, arr.toString()).apply();
+        return result;
     }
 }
@@ -0,0 +1,146 @@
+package net.uattest.service;
+
+import java.util.function.LongSupplier;
+
+public class CircuitBreaker {
+    public static final String CLOSED = "ok";
+    public static final String OPEN = "circuit-open";
+    public static final String HALF_OPEN = "circuit-half-open";
+
+    public interface Listener {
+        void onStateChanged(String backendKey, String state);
+    }
+
+    public static class Config {
+        public int windowSize = 20;
+        public int minimumCalls = 10;
+        public double failureRateThreshold = 0.5;
+        public double slowCallRateThreshold = 0.8;
+        public long slowCallMs = 5_000;
+        public long openMs = 30_000;
+        public long maxOpenMs = 5 * 60_000;
+        public int halfOpenCalls = 3;
+    }
+
+    private final String backendKey;
+    private final Config config;
+    private final LongSupplier clock;
+    private final Listener listener;
+    private final byte[] outcomes;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private String state = CLOSED;
+    private long openUntil;
+    private long openMs;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(String backendKey, Config config, LongSupplier elapsedClock, Listener listener) {
+        this.backendKey = backendKey;
+        this.config = config;
+        this.clock = elapsedClock;
+        this.listener = listener;
+        this.outcomes = new byte[config.windowSize];
+        this.openMs = config.openMs;
+    }
+
+    public boolean tryAcquire() {
+        String changed;
+        synchronized (this) {
+            if (state == CLOSED) {
+                return true;
+            }
+            if (state == OPEN) {
+                if (clock.getAsLong() < openUntil) {
+                    return false;
+                }
+                changed = transition(HALF_OPEN);
+            } else {
+                changed = null;
+            }
+            if (trialsStarted >= config.halfOpenCalls) {
+                return false;
+            }
+            trialsStarted++;
+        }
+        notify(changed);
+        return true;
+    }
+
+    public void onSuccess(long elapsedMs) {
+        onResult(true, elapsedMs >= config.slowCallMs);
+    }
+
+    public void onFailure() {
+        onResult(false, false);
+    }
+
+    public synchronized String state() {
+        return state;
+    }
+
+    public synchronized long retryAfterMs() {
+        return state == OPEN ? Math.max(0, openUntil - clock.getAsLong()) : 0;
+    }
+
+    private void onResult(boolean success, boolean slow) {
+        String changed = null;
+        synchronized (this) {
+            if (state == HALF_OPEN) {
+                if (!success || slow) {
+                    openMs = Math.min(config.maxOpenMs, openMs * 2);
+                    changed = transition(OPEN);
+                } else if (++trialsSucceeded >= config.halfOpenCalls) {
+                    openMs = config.openMs;
+                    changed = transition(CLOSED);
+                }
+            } else if (state == CLOSED) {
+                record(success, slow);
+                if (recorded >= config.minimumCalls
+                        && (failures >= config.failureRateThreshold * recorded
+                        || slowCalls >= config.slowCallRateThreshold * recorded)) {
+                    changed = transition(OPEN);
+                }
+            }
+        }
+        notify(changed);
+    }
+
+    private void record(boolean success, boolean slow) {
+        byte outcome = (byte) ((success ? 0 : 1) | (slow ? 2 : 0));
+        if (recorded == outcomes.length) {
+            byte evicted = outcomes[position];
+            failures -= evicted & 1;
+            slowCalls -= (evicted >> 1) & 1;
+        } else {
+            recorded++;
+        }
+        outcomes[position] = outcome;
+        position = (position + 1) % outcomes.length;
+        failures += outcome & 1;
+        slowCalls += (outcome >> 1) & 1;
+    }
+
+    private String transition(String next) {
+        state = next;
+        trialsStarted = 0;
+        trialsSucceeded = 0;
+        if (next == OPEN) {
+            openUntil = clock.getAsLong() + openMs;
+        } else if (next == CLOSED) {
+            position = 0;
+            recorded = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+        return next;
+    }
+
+    private void notify(String changed) {
+        if (changed != null && listener != null) {
+            listener.onStateChanged(backendKey, changed);
+        }
+    }
+}
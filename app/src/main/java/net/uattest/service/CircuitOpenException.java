@@ -0,0 +1,12 @@
+package net.uattest.service;
+
+public class CircuitOpenException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public final long retryAfterMs;
+
+    public CircuitOpenException(String backendKey, long retryAfterMs) {
+        super("Backend unavailable (circuit open): " + backendKey);
+        this.retryAfterMs = retryAfterMs;
+    }
+}
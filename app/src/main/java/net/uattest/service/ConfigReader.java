@@ -1,7 +1,6 @@
 package net.uattest.service;
 
 import android.content.Context;
-import android.content.res.XmlResourceParser;
 import android.util.Xml;
 
 import org.xmlpull.v1.XmlPullParser;
@@ -15,38 +14,135 @@ import java.util.List;
 public class ConfigReader {
     private static final String CONFIG_PATH = "/product/etc/unifiedattestation.xml";
 
+    private static final Object lock = new Object();
+    private static String configPath = CONFIG_PATH;
+    private static Config cached;
+    private static long cachedModified = -1;
+    private static long cachedLength = -1;
+
     public static List<String> loadDefaultUrls(Context context) {
-        List<String> urls = new ArrayList<>();
-        InputStream input = null;
-        try {
-            File file = new File(CONFIG_PATH);
-            if (file.exists()) {
-                input = new FileInputStream(file);
-                parseXml(input, urls);
-                return urls;
-            }
-        } catch (Exception ignored) {
+        return load().urls;
+    }
+
+    /** Reads the config from {@code path} instead of the product partition; for the JVM load test. */
+    public static void setConfigPath(String path) {
+        synchronized (lock) {
+            configPath = path != null ? path : CONFIG_PATH;
+            cached = null;
         }
+    }
 
-        return urls;
+    /** Parses the config file, reusing the previous result while its mtime and size are unchanged. */
+    public static Config load() {
+        synchronized (lock) {
+            File file = new File(configPath);
+            long modified = file.lastModified();
+            long length = file.length();
+            if (cached != null && modified == cachedModified && length == cachedLength) {
+                return cached;
+            }
+            Config config = new Config();
+            try {
+                if (file.exists()) {
+                    try (InputStream input = new FileInputStream(file)) {
+                        parseXml(input, config);
+                    }
+                }
+            } catch (Exception ignored) {
+            }
+            cached = config;
+            cachedModified = modified;
+            cachedLength = length;
+            return config;
+        }
     }
 
-    private static void parseXml(InputStream input, List<String> urls) throws Exception {
+    private static void parseXml(InputStream input, Config config) throws Exception {
         XmlPullParser parser = Xml.newPullParser();
         parser.setInput(input, "utf-8");
-        parseXml(parser, urls);
+        parseXml(parser, config);
     }
 
-    private static void parseXml(XmlPullParser parser, List<String> urls) throws Exception {
+    private static void parseXml(XmlPullParser parser, Config config) throws Exception {
         int event = parser.getEventType();
         while (event != XmlPullParser.END_DOCUMENT) {
-            if (event == XmlPullParser.START_TAG && "backend".equals(parser.getName())) {
-                String url = parser.getAttributeValue(null, "url");
-                if (url != null && !url.isEmpty()) {
-                    urls.add(url);
+            if (event == XmlPullParser.START_TAG) {
+                String name = parser.getName();
+                if ("backend".equals(name)) {
+                    String url = parser.getAttributeValue(null, "url");
+                    if (url != null && !url.isEmpty()) {
+                        config.urls.add(url);
+                    }
+                } else if ("rateLimit".equals(name)) {
+                    RateLimitRule rule = parseRateLimit(parser);
+                    if (rule != null) {
+                        config.rateLimits.add(rule);
+                    }
+                } else if ("tokenCache".equals(name)) {
+                    TokenCacheRule rule = parseTokenCache(parser);
+                    if (rule != null) {
+                        config.tokenCacheRules.add(rule);
+                    }
                 }
             }
             event = parser.next();
         }
     }
+
+    private static RateLimitRule parseRateLimit(XmlPullParser parser) {
+        try {
+            int requests = Integer.parseInt(parser.getAttributeValue(null, "requests"));
+            long windowMs = Long.parseLong(parser.getAttributeValue(null, "windowMs"));
+            return new RateLimitRule(
+                    parser.getAttributeValue(null, "projectId"),
+                    parser.getAttributeValue(null, "backendId"),
+                    requests,
+                    windowMs
+            );
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static TokenCacheRule parseTokenCache(XmlPullParser parser) {
+        try {
+            return new TokenCacheRule(
+                    parser.getAttributeValue(null, "backendId"),
+                    Long.parseLong(parser.getAttributeValue(null, "ttlMs"))
+            );
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Shared between callers through the cache; treat as read-only. */
+    public static class Config {
+        public final List<String> urls = new ArrayList<>();
+        public final List<RateLimitRule> rateLimits = new ArrayList<>();
+        public final List<TokenCacheRule> tokenCacheRules = new ArrayList<>();
+    }
+
+    public static class RateLimitRule {
+        public final String projectId;
+        public final String backendId;
+        public final int requests;
+        public final long windowMs;
+
+        public RateLimitRule(String projectId, String backendId, int requests, long windowMs) {
+            this.projectId = projectId;
+            this.backendId = backendId;
+            this.requests = requests;
+            this.windowMs = windowMs;
+        }
+    }
+
+    public static class TokenCacheRule {
+        public final String backendId;
+        public final long ttlMs;
+
+        public TokenCacheRule(String backendId, long ttlMs) {
+            this.backendId = backendId;
+            this.ttlMs = ttlMs;
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package net.uattest.service;
+
+import android.os.Build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public final class DeviceMeta {
+    private static volatile byte[] encoded;
+
+    private DeviceMeta() {
+    }
+
+    public static byte[] json() {
+        byte[] cached = encoded;
+        if (cached == null) {
+            cached = encode();
+            encoded = cached;
+        }
+        return cached;
+    }
+
+    private static byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            JsonStreamWriter writer = new JsonStreamWriter(out);
+            writer.beginObject()
+                    .name("manufacturer").value(Build.MANUFACTURER)
+                    .name("brand").value(Build.BRAND)
+                    .name("model").value(Build.MODEL)
+                    .name("device").value(Build.DEVICE)
+                    .name("buildFingerprint").value(Build.FINGERPRINT)
+                    .endObject()
+                    .flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode device meta", e);
+        }
+        return out.toByteArray();
+    }
+}
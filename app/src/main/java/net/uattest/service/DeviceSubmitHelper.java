@@ -1,16 +1,20 @@
 package net.uattest.service;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.os.Build;
+import android.os.SystemClock;
+import android.provider.Settings;
 import android.security.keystore.KeyGenParameterSpec;
 import android.security.keystore.KeyProperties;
-import android.util.Base64;
+import android.util.Log;
 
 import com.android.keyattestation.verifier.AuthorizationList;
 import com.android.keyattestation.verifier.KeyDescription;
 import com.android.keyattestation.verifier.RootOfTrust;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.security.KeyPairGenerator;
@@ -18,6 +22,12 @@ import java.security.KeyStore;
 import java.security.SecureRandom;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import kotlin.Unit;
 import kotlin.jvm.functions.Function1;
@@ -26,20 +36,63 @@ public class DeviceSubmitHelper {
 
     private static final String ALIAS_EC  = "ua_device_submit_probe_ec";
     private static final String ALIAS_RSA = "ua_device_submit_probe_rsa";
+    private static final long RSA_BUDGET_MS = 15_000;
+    private static final String PREFS = "ua_device_submit";
+    private static final String KEY_CACHE_KEY = "cache_key";
+    private static final String KEY_CACHED_JSON = "json";
 
+    // An RSA leg that overran its budget keeps running; it owns ALIAS_RSA until it finishes.
+    private static final AtomicReference<Future<X509Certificate[]>> rsaInFlight = new AtomicReference<>();
+
+    /**
+     * Returns the device facts and trust anchor chains. Nothing in the result depends on the
+     * attestation challenge, so a complete result is cached until the next reboot or OTA.
+     */
     public static JSONObject generate(Context context) throws Exception {
+        String cacheKey = bootKey(context);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        if (cacheKey != null && cacheKey.equals(prefs.getString(KEY_CACHE_KEY, null))) {
+            String cached = prefs.getString(KEY_CACHED_JSON, null);
+            if (cached != null) {
+                try {
+                    return new JSONObject(cached);
+                } catch (JSONException e) {
+                    Log.w("UAService", "Discarding unreadable device submit cache", e);
+                }
+            }
+        }
+        Generated generated = generateFresh();
+        if (cacheKey != null && generated.complete) {
+            prefs.edit()
+                    .putString(KEY_CACHE_KEY, cacheKey)
+                    .putString(KEY_CACHED_JSON, generated.json.toString())
+                    .apply();
+        }
+        return generated.json;
+    }
+
+    /** Boot count plus build fingerprint, or null if the boot count is unavailable. */
+    private static String bootKey(Context context) {
+        int bootCount = Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+        return bootCount < 0 ? null : bootCount + "|" + Build.FINGERPRINT;
+    }
+
+    private static Generated generateFresh() throws Exception {
         byte[] challenge = new byte[32];
         new SecureRandom().nextBytes(challenge);
+        long rsaDeadline = SystemClock.elapsedRealtime() + RSA_BUDGET_MS;
 
-        KeyStore ks = KeyStore.getInstance("AndroidKeyStore");
-        ks.load(null);
+        // RSA keygen is several times slower than EC, so it runs alongside the EC leg and parsing.
+        Future<X509Certificate[]> rsaLeg = startRsaLeg(challenge);
 
-        X509Certificate[] ecChain  = generateAttestedChain(ks, ALIAS_EC,  KeyProperties.KEY_ALGORITHM_EC,  challenge);
-        X509Certificate[] rsaChain = null;
+        X509Certificate[] ecChain;
         try {
-            rsaChain = generateAttestedChain(ks, ALIAS_RSA, KeyProperties.KEY_ALGORITHM_RSA, challenge);
-        } catch (Exception ignored) {
-            // RSA hardware attestation is not available on all devices
+            ecChain = generateAttestedChain(ALIAS_EC, KeyProperties.KEY_ALGORITHM_EC, challenge);
+        } catch (Exception e) {
+            if (rsaLeg != null) {
+                rsaLeg.cancel(true);
+            }
+            throw e;
         }
 
         X509Certificate ecLeaf = ecChain[0];
@@ -55,9 +108,9 @@ public class DeviceSubmitHelper {
         AuthorizationList hw = desc.getHardwareEnforced();
         RootOfTrust rot = hw.getRootOfTrust();
 
-        String verifiedBootKey   = rot != null ? bytesToHex(rot.getVerifiedBootKey().toByteArray()) : null;
+        String verifiedBootKey   = rot != null ? Codec.hexEncode(rot.getVerifiedBootKey().toByteArray()) : null;
         String verifiedBootHash  = (rot != null && rot.getVerifiedBootHash() != null)
-                ? bytesToHex(rot.getVerifiedBootHash().toByteArray()) : null;
+                ? Codec.hexEncode(rot.getVerifiedBootHash().toByteArray()) : null;
         String verifiedBootState = rot != null ? rot.getVerifiedBootState().name() : null;
         String osVersion    = hw.getOsVersion()    != null ? hw.getOsVersion().toString()    : null;
         String osPatchLevel = hw.getOsPatchLevel() != null ? hw.getOsPatchLevel().toString() : null;
@@ -83,6 +136,7 @@ public class DeviceSubmitHelper {
 
         JSONObject trustAnchor = new JSONObject();
         trustAnchor.put("ec",  chainToJson(ecChain));
+        X509Certificate[] rsaChain = awaitRsaLeg(rsaLeg, rsaDeadline);
         if (rsaChain != null) {
             trustAnchor.put("rsa", chainToJson(rsaChain));
         }
@@ -94,11 +148,55 @@ public class DeviceSubmitHelper {
         attestInfo.put("keymasterSecurityLevel",   desc.getKeyMintSecurityLevel().name());
         json.put("attestationInfo", attestInfo);
 
-        return json;
+        // An RSA leg that overran or was skipped may succeed next time; only a definite answer is cached.
+        boolean complete = rsaChain != null || (rsaLeg != null && rsaLeg.isDone() && !rsaLeg.isCancelled());
+        return new Generated(json, complete);
+    }
+
+    private static Future<X509Certificate[]> startRsaLeg(byte[] challenge) {
+        if (rsaInFlight.get() != null) {
+            Log.w("UAService", "Previous RSA attestation still running; submitting EC only");
+            return null;
+        }
+        FutureTask<X509Certificate[]> task = new FutureTask<>(
+                () -> generateAttestedChain(ALIAS_RSA, KeyProperties.KEY_ALGORITHM_RSA, challenge));
+        if (!rsaInFlight.compareAndSet(null, task)) {
+            return null;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } finally {
+                rsaInFlight.compareAndSet(task, null);
+            }
+        }, "ua-submit-rsa");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    /** Returns the RSA chain, or null if RSA attestation failed or missed its budget. */
+    private static X509Certificate[] awaitRsaLeg(Future<X509Certificate[]> rsaLeg, long deadline)
+            throws InterruptedException {
+        if (rsaLeg == null) {
+            return null;
+        }
+        try {
+            long remaining = Math.max(0, deadline - SystemClock.elapsedRealtime());
+            return rsaLeg.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Log.w("UAService", "RSA attestation exceeded " + RSA_BUDGET_MS + "ms; submitting EC only");
+        } catch (ExecutionException ignored) {
+            // RSA hardware attestation is not available on all devices
+        }
+        return null;
     }
 
     private static X509Certificate[] generateAttestedChain(
-            KeyStore ks, String alias, String algorithm, byte[] challenge) throws Exception {
+            String alias, String algorithm, byte[] challenge) throws Exception {
+        // One KeyStore per leg, since the legs run on different threads.
+        KeyStore ks = KeyStore.getInstance("AndroidKeyStore");
+        ks.load(null);
         if (ks.containsAlias(alias)) ks.deleteEntry(alias);
 
         KeyGenParameterSpec.Builder builder = new KeyGenParameterSpec.Builder(
@@ -143,14 +241,16 @@ public class DeviceSubmitHelper {
     }
 
     private static String certToPem(X509Certificate cert) throws Exception {
-        return "-----BEGIN CERTIFICATE-----\n"
-                + Base64.encodeToString(cert.getEncoded(), Base64.NO_WRAP)
-                + "\n-----END CERTIFICATE-----";
+        return Codec.pemEncode(Codec.PEM_CERTIFICATE, cert.getEncoded());
     }
 
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) sb.append(String.format("%02x", b));
-        return sb.toString();
+    private static class Generated {
+        final JSONObject json;
+        final boolean complete;
+
+        Generated(JSONObject json, boolean complete) {
+            this.json = json;
+            this.complete = complete;
+        }
     }
 }
@@ -0,0 +1,209 @@
+package net.uattest.service;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class HealthScheduler {
+    private static final long STABLE_INTERVAL_MS = 15 * 60 * 1000L;
+    private static final long MAX_STABLE_INTERVAL_MS = 60 * 60 * 1000L;
+    private static final long RETRY_INTERVAL_MS = 30 * 1000L;
+    private static final long MAX_RETRY_INTERVAL_MS = 15 * 60 * 1000L;
+    private static final long ROUND_TIMEOUT_MS = 20 * 1000L;
+    private static final double JITTER = 0.2;
+
+    private final Context context;
+    private final BackendRegistry registry;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> daemon(runnable, "ua-health")
+    );
+    private final Map<String, ProbeState> states = new HashMap<>();
+    private ScheduledFuture<?> nextRound;
+
+    public HealthScheduler(Context context, BackendRegistry registry) {
+        this.context = context;
+        this.registry = registry;
+    }
+
+    public synchronized void start() {
+        long now = SystemClock.elapsedRealtime();
+        for (BackendEntry entry : registry.snapshot().entries) {
+            stateFor(entry, now);
+        }
+        reschedule(now);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void runRound() {
+        try {
+            probeDueBackends();
+        } catch (RuntimeException e) {
+            Log.w("UAService", "Health check round failed", e);
+            synchronized (this) {
+                reschedule(SystemClock.elapsedRealtime());
+            }
+        }
+    }
+
+    private void probeDueBackends() {
+        long now = SystemClock.elapsedRealtime();
+        List<String> due = new ArrayList<>();
+        synchronized (this) {
+            Set<String> present = new HashSet<>();
+            for (BackendEntry entry : registry.snapshot().entries) {
+                present.add(entry.url);
+                if (stateFor(entry, now).nextCheckAt <= now) {
+                    due.add(entry.url);
+                }
+            }
+            states.keySet().retainAll(present);
+        }
+        Map<String, BackendInfo> results = probe(due);
+        synchronized (this) {
+            long finished = SystemClock.elapsedRealtime();
+            for (Map.Entry<String, BackendInfo> result : results.entrySet()) {
+                ProbeState state = states.get(result.getKey());
+                if (state != null) {
+                    state.record(result.getValue() != null, finished);
+                }
+            }
+            persistChanges(results);
+            reschedule(finished);
+        }
+    }
+
+    private Map<String, BackendInfo> probe(List<String> urls) {
+        Map<String, BackendInfo> results = new HashMap<>();
+        if (urls.isEmpty()) {
+            return results;
+        }
+        // All probes are in flight at once on the transport's async path; this thread only waits.
+        List<CompletableFuture<BackendInfo>> futures = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            futures.add(UaHttp.fetchBackendInfoAsync(url));
+        }
+        long deadline = SystemClock.elapsedRealtime() + ROUND_TIMEOUT_MS;
+        for (int i = 0; i < urls.size(); i++) {
+            CompletableFuture<BackendInfo> future = futures.get(i);
+            BackendInfo info = null;
+            try {
+                long remaining = Math.max(0, deadline - SystemClock.elapsedRealtime());
+                info = future.get(remaining, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelAll(futures);
+                break;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+            } catch (ExecutionException ignored) {
+            }
+            results.put(urls.get(i), info);
+        }
+        return results;
+    }
+
+    private static void cancelAll(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private void persistChanges(Map<String, BackendInfo> results) {
+        long now = System.currentTimeMillis();
+        for (BackendEntry entry : registry.snapshot().entries) {
+            if (!results.containsKey(entry.url)) {
+                continue;
+            }
+            BackendInfo info = results.get(entry.url);
+            String status = info != null ? "ok" : unavailableStatus(entry.url);
+            if (info != null && !info.capabilities.equals(entry.capabilities)) {
+                BackendStore.update(context, entry.url, stored -> {
+                    stored.capabilities = info.capabilities;
+                    stored.lastStatus = status;
+                    stored.lastCheckedAt = now;
+                });
+            } else if (!status.equals(entry.lastStatus)) {
+                BackendStore.updateStatus(context, entry.url, status, now);
+            }
+        }
+    }
+
+    private static String unavailableStatus(String url) {
+        String circuit = UaHttp.circuitState(url);
+        return CircuitBreaker.CLOSED.equals(circuit) ? "unreachable" : circuit;
+    }
+
+    private void reschedule(long now) {
+        long next = now + STABLE_INTERVAL_MS;
+        for (ProbeState state : states.values()) {
+            next = Math.min(next, state.nextCheckAt);
+        }
+        if (nextRound != null) {
+            nextRound.cancel(false);
+        }
+        if (!scheduler.isShutdown()) {
+            nextRound = scheduler.schedule(this::runRound, Math.max(0, next - now), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private ProbeState stateFor(BackendEntry entry, long now) {
+        ProbeState state = states.get(entry.url);
+        if (state == null) {
+            state = new ProbeState();
+            long interval = "ok".equals(entry.lastStatus) ? STABLE_INTERVAL_MS : RETRY_INTERVAL_MS;
+            state.nextCheckAt = now + jitter(interval);
+            states.put(entry.url, state);
+        }
+        return state;
+    }
+
+    private static long jitter(long intervalMs) {
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+        return (long) (intervalMs * factor);
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static class ProbeState {
+        long nextCheckAt;
+        int consecutiveSuccesses;
+        int consecutiveFailures;
+
+        void record(boolean ok, long now) {
+            long interval;
+            if (ok) {
+                consecutiveFailures = 0;
+                consecutiveSuccesses = Math.min(consecutiveSuccesses + 1, 16);
+                interval = Math.min(MAX_STABLE_INTERVAL_MS, STABLE_INTERVAL_MS << (consecutiveSuccesses - 1));
+            } else {
+                consecutiveSuccesses = 0;
+                consecutiveFailures = Math.min(consecutiveFailures + 1, 16);
+                interval = Math.min(MAX_RETRY_INTERVAL_MS, RETRY_INTERVAL_MS << (consecutiveFailures - 1));
+            }
+            nextCheckAt = now + jitter(interval);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package net.uattest.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface HttpResponse extends Closeable {
+    int code();
+
+    String header(String name);
+
+    InputStream body() throws IOException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,28 @@
+package net.uattest.service;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+public interface HttpTransport {
+    HttpResponse execute(HttpRequest request) throws IOException;
+
+    /**
+     * Starts the request without blocking the caller. The default runs {@link #execute} on the
+     * common pool; transports with their own asynchronous I/O should override it.
+     */
+    default CompletableFuture<HttpResponse> executeAsync(HttpRequest request) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        CompletableFuture.runAsync(() -> {
+            try {
+                future.complete(execute(request));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    void evictIdle(String backendKey);
+
+    void shutdown();
+}
@@ -1,14 +1,35 @@
 package net.uattest.service;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.os.Binder;
+import android.os.SystemClock;
+
+import androidx.core.content.ContextCompat;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class IdentityVerifier {
+    private static final String ACTION_USER_SWITCHED = "android.intent.action.USER_SWITCHED";
+    private static final long NEGATIVE_TTL_MS = 30_000;
+    private static final int MAX_NEGATIVE_ENTRIES = 1024;
+
+    private static final Map<Integer, String[]> packagesByUid = new ConcurrentHashMap<>();
+    private static final Map<Integer, Long> unknownUntil = new ConcurrentHashMap<>();
+    private static final AtomicLong epoch = new AtomicLong();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong negativeHits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
     public static void enforceCaller(Context context, String projectId) throws SecurityException {
         int uid = Binder.getCallingUid();
-        PackageManager pm = context.getPackageManager();
-        String[] packages = pm.getPackagesForUid(uid);
+        String[] packages = packagesForUid(context, uid);
         if (packages == null) {
             throw new SecurityException("Unknown UID");
         }
@@ -19,4 +40,88 @@ public class IdentityVerifier {
         }
         throw new SecurityException("Caller package does not match projectId");
     }
+
+    public static BroadcastReceiver registerInvalidation(Context context) {
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context ctx, Intent intent) {
+                int uid = intent.getIntExtra(Intent.EXTRA_UID, -1);
+                if (uid >= 0 && intent.getData() != null) {
+                    invalidate(uid);
+                } else {
+                    invalidateAll();
+                }
+            }
+        };
+        IntentFilter packages = new IntentFilter();
+        packages.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packages.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packages.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packages.addDataScheme("package");
+        IntentFilter users = new IntentFilter();
+        users.addAction(ACTION_USER_SWITCHED);
+        users.addAction(Intent.ACTION_USER_FOREGROUND);
+        users.addAction(Intent.ACTION_USER_BACKGROUND);
+        ContextCompat.registerReceiver(context, receiver, packages, ContextCompat.RECEIVER_NOT_EXPORTED);
+        ContextCompat.registerReceiver(context, receiver, users, ContextCompat.RECEIVER_NOT_EXPORTED);
+        return receiver;
+    }
+
+    public static void invalidate(int uid) {
+        epoch.incrementAndGet();
+        packagesByUid.remove(uid);
+        // A newly installed package may have been assigned a UID we previously rejected.
+        unknownUntil.clear();
+    }
+
+    public static void invalidateAll() {
+        epoch.incrementAndGet();
+        packagesByUid.clear();
+        unknownUntil.clear();
+    }
+
+    public static void dump(PrintWriter pw) {
+        long hit = hits.get();
+        long negative = negativeHits.get();
+        long miss = misses.get();
+        long total = hit + negative + miss;
+        pw.println("Caller identity cache:");
+        pw.println("  entries=" + packagesByUid.size() + " unknown=" + unknownUntil.size());
+        pw.println("  hits=" + hit + " negativeHits=" + negative + " misses=" + miss
+                + " hitRate=" + (total == 0 ? "n/a" : String.format("%.1f%%", 100.0 * (hit + negative) / total)));
+    }
+
+    private static String[] packagesForUid(Context context, int uid) {
+        String[] cached = packagesByUid.get(uid);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        Long until = unknownUntil.get(uid);
+        long now = SystemClock.elapsedRealtime();
+        if (until != null) {
+            if (now < until) {
+                negativeHits.incrementAndGet();
+                return null;
+            }
+            unknownUntil.remove(uid, until);
+        }
+        misses.incrementAndGet();
+        long observed = epoch.get();
+        PackageManager pm = context.getPackageManager();
+        String[] packages = pm.getPackagesForUid(uid);
+        if (epoch.get() != observed) {
+            // Packages changed while we were asking; don't cache a possibly stale answer.
+            return packages;
+        }
+        if (packages != null) {
+            packagesByUid.put(uid, packages);
+            if (epoch.get() != observed) {
+                packagesByUid.remove(uid, packages);
+            }
+        } else if (unknownUntil.size() < MAX_NEGATIVE_ENTRIES) {
+            unknownUntil.put(uid, now + NEGATIVE_TTL_MS);
+        }
+        return packages;
+    }
 }
@@ -0,0 +1,92 @@
+package net.uattest.service;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class JsonFieldReader {
+    // Top-level scalar fields are read as strings, arrays of scalars as lists of strings.
+    public static Fields read(InputStream input, long maxBytes, String... names) throws IOException {
+        Object[] values = new Object[names.length];
+        if (input == null) {
+            return new Fields(values);
+        }
+        JsonReader reader = new JsonReader(new InputStreamReader(
+                new BoundedInputStream(input, maxBytes),
+                StandardCharsets.UTF_8
+        ));
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new IOException("Expected JSON object");
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int index = indexOf(names, reader.nextName());
+            if (index < 0) {
+                reader.skipValue();
+                continue;
+            }
+            JsonToken token = reader.peek();
+            if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+                values[index] = reader.nextString();
+            } else if (token == JsonToken.BOOLEAN) {
+                values[index] = Boolean.toString(reader.nextBoolean());
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                values[index] = readScalarArray(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Fields(values);
+    }
+
+    private static List<String> readScalarArray(JsonReader reader) throws IOException {
+        List<String> items = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+                items.add(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+        return items;
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static class Fields {
+        private final Object[] values;
+
+        Fields(Object[] values) {
+            this.values = values;
+        }
+
+        /** The scalar value of field {@code index}, or null if it was absent or an array. */
+        public String get(int index) {
+            return values[index] instanceof String ? (String) values[index] : null;
+        }
+
+        /** The array value of field {@code index}, or an empty list if it was absent or a scalar. */
+        @SuppressWarnings("unchecked")
+        public List<String> list(int index) {
+            return values[index] instanceof List ? (List<String>) values[index] : Collections.emptyList();
+        }
+    }
+}
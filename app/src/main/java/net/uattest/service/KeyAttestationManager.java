@@ -7,63 +7,158 @@ import android.security.keystore.KeyProperties;
 
 import java.security.KeyPairGenerator;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.security.cert.Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class KeyAttestationManager {
     private static final String PROVIDER = "AndroidKeyStore";
     private static final String PREFS = "ua_attestation_keys";
+    private static final int MAX_CACHED_CERTS = 64;
+
+    private static final Map<String, AliasState> aliases = new ConcurrentHashMap<>();
+    private static final Map<String, String> encodedByFingerprint = new ConcurrentHashMap<>();
+    private static KeyStore keyStore;
 
     public static List<String> getAttestationChain(
             Context context,
             String alias,
             byte[] requestHash
     ) throws Exception {
-        KeyStore ks = KeyStore.getInstance(PROVIDER);
-        ks.load(null);
+        return getAttestationChain(context, alias, requestHash, null, null);
+    }
+
+    public static List<String> getAttestationChain(
+            Context context,
+            String alias,
+            byte[] requestHash,
+            StageMetrics metrics,
+            String backendId
+    ) throws Exception {
+        AliasState state = aliases.computeIfAbsent(alias, key -> new AliasState());
+        synchronized (state) {
+            long start = metrics != null ? metrics.now() : 0;
+            if (state.chain != null && Arrays.equals(state.requestHash, requestHash)) {
+                if (metrics != null) {
+                    metrics.record(StageMetrics.KEYGEN, backendId, StageMetrics.CACHED, start);
+                }
+                return state.chain;
+            }
+            String stage = StageMetrics.KEYGEN;
+            try {
+                KeyStore ks = keyStore();
+
+                boolean regenerate = shouldRegenerate(context, state, alias, requestHash);
+                boolean generated = !ks.containsAlias(alias) || regenerate;
+                if (generated) {
+                    if (ks.containsAlias(alias)) {
+                        ks.deleteEntry(alias);
+                    }
+                    state.chain = null;
+                    KeyGenParameterSpec spec = new KeyGenParameterSpec.Builder(
+                            alias,
+                            KeyProperties.PURPOSE_SIGN | KeyProperties.PURPOSE_VERIFY
+                    )
+                            .setDigests(KeyProperties.DIGEST_SHA256)
+                            .setAttestationChallenge(requestHash)
+                            .build();
+                    KeyPairGenerator kpg = KeyPairGenerator.getInstance(
+                            KeyProperties.KEY_ALGORITHM_EC,
+                            PROVIDER
+                    );
+                    kpg.initialize(spec);
+                    kpg.generateKeyPair();
+                    rememberRequestHash(context, state, alias, requestHash);
+                }
+                if (metrics != null) {
+                    start = metrics.record(stage, backendId, generated ? StageMetrics.OK : StageMetrics.CACHED, start);
+                }
 
-        boolean regenerate = shouldRegenerate(context, alias, requestHash);
-        if (!ks.containsAlias(alias) || regenerate) {
-            if (ks.containsAlias(alias)) {
-                ks.deleteEntry(alias);
+                stage = StageMetrics.CHAIN_ENCODING;
+                Certificate[] chain = ks.getCertificateChain(alias);
+                if (chain == null || chain.length == 0) {
+                    throw new IllegalStateException("No attestation certificate chain");
+                }
+                List<String> output = new ArrayList<>(chain.length);
+                output.add(Codec.base64Encode(chain[0].getEncoded()));
+                for (int i = 1; i < chain.length; i++) {
+                    output.add(encodeShared(chain[i]));
+                }
+                state.chain = Collections.unmodifiableList(output);
+                state.requestHash = requestHash.clone();
+                if (metrics != null) {
+                    metrics.record(stage, backendId, StageMetrics.OK, start);
+                }
+                return state.chain;
+            } catch (Exception e) {
+                if (metrics != null) {
+                    metrics.record(stage, backendId, StageMetrics.ERROR, start);
+                }
+                throw e;
             }
-            KeyGenParameterSpec spec = new KeyGenParameterSpec.Builder(
-                    alias,
-                    KeyProperties.PURPOSE_SIGN | KeyProperties.PURPOSE_VERIFY
-            )
-                    .setDigests(KeyProperties.DIGEST_SHA256)
-                    .setAttestationChallenge(requestHash)
-                    .build();
-            KeyPairGenerator kpg = KeyPairGenerator.getInstance(
-                    KeyProperties.KEY_ALGORITHM_EC,
-                    PROVIDER
-            );
-            kpg.initialize(spec);
-            kpg.generateKeyPair();
-            rememberRequestHash(context, alias, requestHash);
         }
+    }
 
-        Certificate[] chain = ks.getCertificateChain(alias);
-        if (chain == null || chain.length == 0) {
-            throw new IllegalStateException("No attestation certificate chain");
+    private static synchronized KeyStore keyStore() throws Exception {
+        if (keyStore == null) {
+            KeyStore ks = KeyStore.getInstance(PROVIDER);
+            ks.load(null);
+            keyStore = ks;
         }
-        List<String> output = new ArrayList<>();
-        for (Certificate cert : chain) {
-            output.add(Base64Util.encode(cert.getEncoded()));
+        return keyStore;
+    }
+
+    private static String encodeShared(Certificate cert) throws Exception {
+        byte[] der = cert.getEncoded();
+        String fingerprint = Codec.hexEncode(MessageDigest.getInstance("SHA-256").digest(der));
+        String encoded = encodedByFingerprint.get(fingerprint);
+        if (encoded == null) {
+            encoded = Codec.base64Encode(der);
+            if (encodedByFingerprint.size() >= MAX_CACHED_CERTS) {
+                encodedByFingerprint.clear();
+            }
+            encodedByFingerprint.put(fingerprint, encoded);
         }
-        return output;
+        return encoded;
     }
 
-    private static boolean shouldRegenerate(Context context, String alias, byte[] requestHash) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
-        String stored = prefs.getString(alias, null);
-        String current = Base64Util.encode(requestHash);
-        return stored != null && !stored.equals(current);
+    private static boolean shouldRegenerate(
+            Context context,
+            AliasState state,
+            String alias,
+            byte[] requestHash
+    ) {
+        if (!state.storedHashLoaded) {
+            SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+            state.storedHash = prefs.getString(alias, null);
+            state.storedHashLoaded = true;
+        }
+        String current = Codec.base64Encode(requestHash);
+        return state.storedHash != null && !state.storedHash.equals(current);
     }
 
-    private static void rememberRequestHash(Context context, String alias, byte[] requestHash) {
+    private static void rememberRequestHash(
+            Context context,
+            AliasState state,
+            String alias,
+            byte[] requestHash
+    ) {
+        String encoded = Codec.base64Encode(requestHash);
+        state.storedHash = encoded;
+        state.storedHashLoaded = true;
         SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
-        prefs.edit().putString(alias, Base64Util.encode(requestHash)).apply();
+        prefs.edit().putString(alias, encoded).apply();
+    }
+
+    private static class AliasState {
+        byte[] requestHash;
+        List<String> chain;
+        String storedHash;
+        boolean storedHashLoaded;
     }
 }
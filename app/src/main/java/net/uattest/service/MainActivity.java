@@ -26,6 +26,7 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -36,6 +37,7 @@ public class MainActivity extends AppCompatActivity {
     private TextView statusText;
     private EditText backendUrlInput;
     private IUnifiedAttestationService service;
+    private IUnifiedAttestationDiagnostics diagnostics;
 
     private final ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
@@ -49,6 +51,18 @@ public class MainActivity extends AppCompatActivity {
         }
     };
 
+    private final ServiceConnection diagnosticsConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            diagnostics = IUnifiedAttestationDiagnostics.Stub.asInterface(binder);
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            diagnostics = null;
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -61,14 +75,22 @@ public class MainActivity extends AppCompatActivity {
         Button addButton = findViewById(R.id.addBackendButton);
         Button refreshButton = findViewById(R.id.refreshButton);
         Button submitButton = findViewById(R.id.submitDeviceButton);
+        Button statsButton = findViewById(R.id.statsButton);
 
         addButton.setOnClickListener(v -> addBackend());
         refreshButton.setOnClickListener(v -> refreshHealth());
         submitButton.setOnClickListener(v -> submitDevice());
+        statsButton.setOnClickListener(v -> showStats());
 
-        backends = BackendStore.load(this);
         renderBackends();
+        executor.submit(this::reloadBackends);
         bindService(new Intent(this, UnifiedAttestationService.class), serviceConnection, Context.BIND_AUTO_CREATE);
+        bindService(
+                new Intent(this, UnifiedAttestationService.class)
+                        .setAction(UnifiedAttestationService.ACTION_DIAGNOSTICS),
+                diagnosticsConnection,
+                Context.BIND_AUTO_CREATE
+        );
     }
 
     @Override
@@ -78,6 +100,10 @@ public class MainActivity extends AppCompatActivity {
             unbindService(serviceConnection);
         } catch (Exception ignored) {
         }
+        try {
+            unbindService(diagnosticsConnection);
+        } catch (Exception ignored) {
+        }
         executor.shutdownNow();
     }
 
@@ -90,11 +116,13 @@ public class MainActivity extends AppCompatActivity {
             try {
                 BackendInfo info = UaHttp.fetchBackendInfo(url);
                 BackendEntry entry = new BackendEntry(info.backendId, info.url, true);
+                entry.capabilities = info.capabilities;
                 entry.lastStatus = "ok";
                 entry.lastCheckedAt = System.currentTimeMillis();
-                backends.add(entry);
-                BackendStore.save(this, backends);
+                BackendStore.put(this, entry);
+                List<BackendEntry> updated = BackendStore.load(this);
                 runOnUiThread(() -> {
+                    backends = updated;
                     backendUrlInput.setText("");
                     renderBackends();
                 });
@@ -107,13 +135,20 @@ public class MainActivity extends AppCompatActivity {
 
     private void refreshHealth() {
         executor.submit(() -> {
-            for (BackendEntry entry : backends) {
+            for (BackendEntry entry : BackendStore.load(this)) {
                 boolean ok = UaHttp.pingBackend(entry.url);
-                entry.lastStatus = ok ? "ok" : "unreachable";
-                entry.lastCheckedAt = System.currentTimeMillis();
+                BackendStore.updateStatus(this, entry.url, ok ? "ok" : "unreachable", System.currentTimeMillis());
             }
-            BackendStore.save(this, backends);
-            runOnUiThread(this::renderBackends);
+            reloadBackends();
+        });
+    }
+
+    /** Reads the store on the calling (worker) thread and re-renders on the UI thread. */
+    private void reloadBackends() {
+        List<BackendEntry> updated = BackendStore.load(this);
+        runOnUiThread(() -> {
+            backends = updated;
+            renderBackends();
         });
     }
 
@@ -148,17 +183,21 @@ public class MainActivity extends AppCompatActivity {
         Button toggle = new Button(this);
         toggle.setText(entry.enabled ? "Disable" : "Enable");
         toggle.setOnClickListener(v -> {
-            entry.enabled = !entry.enabled;
-            BackendStore.save(this, backends);
-            renderBackends();
+            boolean enabled = !entry.enabled;
+            executor.submit(() -> {
+                BackendStore.update(this, entry.url, stored -> stored.enabled = enabled);
+                reloadBackends();
+            });
         });
 
         Button remove = new Button(this);
         remove.setText("Remove");
         remove.setOnClickListener(v -> {
-            backends.remove(entry);
-            BackendStore.save(this, backends);
-            renderBackends();
+            executor.submit(() -> {
+                BackendStore.remove(this, entry.url);
+                UaHttp.releaseBackend(entry.url);
+                reloadBackends();
+            });
         });
 
         Button check = new Button(this);
@@ -187,7 +226,8 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
         String projectId = getPackageName();
-        String canonical = "action=sanity&ts=0";
+        // Unique per click, so the token cache never answers it and the backend is really contacted.
+        String canonical = "action=sanity&ts=" + System.currentTimeMillis() + "&nonce=" + UUID.randomUUID();
         String requestHash = sha256Hex(canonical.getBytes(StandardCharsets.UTF_8));
         try {
             service.requestIntegrityToken(
@@ -266,6 +306,7 @@ public class MainActivity extends AppCompatActivity {
         executor.submit(() -> {
             try {
                 org.json.JSONObject json = DeviceSubmitHelper.generate(this);
+                UaHttp.setCapabilities(entry.url, entry.capabilities);
                 org.json.JSONObject result = UaHttp.postOemDeviceSubmit(entry.url, token, json);
                 String msg = buildSubmitSuccessMsg(result);
                 runOnUiThread(() -> {
@@ -354,6 +395,39 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    private void showStats() {
+        IUnifiedAttestationDiagnostics current = diagnostics;
+        if (current == null) {
+            statusText.setText("Service not bound");
+            return;
+        }
+        executor.submit(() -> {
+            try {
+                String report = current.getStageLatencyReport();
+                runOnUiThread(() -> {
+                    TextView textView = new TextView(this);
+                    textView.setText(report);
+                    textView.setTextSize(11f);
+                    textView.setPadding(24, 16, 24, 16);
+                    textView.setTypeface(android.graphics.Typeface.MONOSPACE);
+                    textView.setTextIsSelectable(true);
+
+                    ScrollView scroll = new ScrollView(this);
+                    scroll.addView(textView);
+
+                    new AlertDialog.Builder(this)
+                            .setTitle("Request Latency")
+                            .setView(scroll)
+                            .setPositiveButton("Close", null)
+                            .show();
+                });
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to load stats", e);
+                runOnUiThread(() -> statusText.setText("Stats failed: " + e.getMessage()));
+            }
+        });
+    }
+
     private void showSubmitResult(String json) {
         statusText.setText("Ready to submit");
 
@@ -380,13 +454,7 @@ public class MainActivity extends AppCompatActivity {
 
     private static String sha256Hex(byte[] data) {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(data);
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
+            return Codec.hexEncode(MessageDigest.getInstance("SHA-256").digest(data));
         } catch (Exception e) {
             return "";
         }
@@ -0,0 +1,179 @@
+package net.uattest.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+
+public class OkHttpTransport implements HttpTransport {
+    private final TransportConfig config;
+    private final OkHttpClient baseClient;
+    private final Map<String, OkHttpClient> clients = new ConcurrentHashMap<>();
+
+    public OkHttpTransport(TransportConfig config) {
+        this.config = config;
+        List<Protocol> protocols = config.http2Enabled
+                ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                : Collections.singletonList(Protocol.HTTP_1_1);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.maxAsyncRequests);
+        dispatcher.setMaxRequestsPerHost(config.maxAsyncRequestsPerBackend);
+        this.baseClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .protocols(protocols)
+                .connectTimeout(config.connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(config.readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(config.readTimeoutMs, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(true)
+                .build();
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        return new OkHttpResponse(newCall(request).execute());
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequest request) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        Call call = newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (!future.complete(new OkHttpResponse(response))) {
+                    response.close();
+                }
+            }
+        });
+        future.whenComplete((response, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    private Call newCall(HttpRequest request) {
+        Request.Builder builder = new Request.Builder().url(request.url);
+        for (Map.Entry<String, String> header : request.headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        if (request.body != null) {
+            if (request.body.contentEncoding() != null) {
+                builder.header("Content-Encoding", request.body.contentEncoding());
+            }
+            builder.method(request.method, new StreamingBody(request.body));
+        } else {
+            builder.method(request.method, null);
+        }
+        Call call = clientFor(request.backendKey).newCall(builder.build());
+        if (request.timeoutMs > 0) {
+            call.timeout().timeout(request.timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        return call;
+    }
+
+    @Override
+    public void evictIdle(String backendKey) {
+        OkHttpClient client = clients.get(backendKey);
+        if (client != null) {
+            client.connectionPool().evictAll();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (OkHttpClient client : clients.values()) {
+            client.connectionPool().evictAll();
+        }
+        clients.clear();
+        baseClient.dispatcher().executorService().shutdown();
+    }
+
+    private OkHttpClient clientFor(String backendKey) {
+        return clients.computeIfAbsent(backendKey, key -> baseClient.newBuilder()
+                .connectionPool(new ConnectionPool(
+                        config.maxIdleConnectionsPerBackend,
+                        config.keepAliveMs,
+                        TimeUnit.MILLISECONDS
+                ))
+                .build());
+    }
+
+    private static class StreamingBody extends RequestBody {
+        private final HttpBody body;
+        private final MediaType type;
+
+        StreamingBody(HttpBody body) {
+            this.body = body;
+            this.type = body.contentType() != null ? MediaType.parse(body.contentType()) : null;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return type;
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            body.writeTo(sink.outputStream());
+        }
+    }
+
+    private static class OkHttpResponse implements HttpResponse {
+        private final Response response;
+
+        OkHttpResponse(Response response) {
+            this.response = response;
+        }
+
+        @Override
+        public int code() {
+            return response.code();
+        }
+
+        @Override
+        public String header(String name) {
+            return response.header(name);
+        }
+
+        @Override
+        public InputStream body() {
+            ResponseBody body = response.body();
+            return body != null ? body.byteStream() : null;
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package net.uattest.service;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public CompletableFuture<V> execute(K key, Executor executor, Callable<V> work) {
+        return executeAsync(key, executor, () -> CompletableFuture.completedFuture(work.call()));
+    }
+
+    /**
+     * Like {@link #execute}, but {@code work} only starts the operation on {@code executor} and
+     * returns its future; the key stays in flight until that future completes.
+     */
+    public CompletableFuture<V> executeAsync(K key, Executor executor, Callable<CompletableFuture<V>> work) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing;
+        }
+        executed.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                CompletableFuture<V> pending;
+                try {
+                    pending = work.call();
+                    if (pending == null) {
+                        throw new IllegalStateException("No future returned for " + key);
+                    }
+                } catch (Throwable t) {
+                    inFlight.remove(key, created);
+                    created.completeExceptionally(t);
+                    return;
+                }
+                pending.whenComplete((value, error) -> {
+                    inFlight.remove(key, created);
+                    if (error != null) {
+                        created.completeExceptionally(error);
+                    } else {
+                        created.complete(value);
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    public void dump(PrintWriter pw, String name) {
+        pw.println(name + ": executed=" + executed.get()
+                + " coalesced=" + coalesced.get()
+                + " inFlight=" + inFlight.size());
+    }
+}
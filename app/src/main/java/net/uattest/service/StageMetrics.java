@@ -0,0 +1,116 @@
+package net.uattest.service;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+public class StageMetrics {
+    public static final String RATE_LIMIT = "rate_limit";
+    public static final String IDENTITY = "identity";
+    public static final String KEYGEN = "keygen";
+    public static final String CHAIN_ENCODING = "chain_encoding";
+    public static final String HTTP = "http";
+    public static final String CALLBACK = "callback";
+
+    public static final String OK = "ok";
+    public static final String CACHED = "cached";
+    public static final String REJECTED = "rejected";
+    public static final String ERROR = "error";
+
+    private static final String UNKNOWN_BACKEND = "-";
+    private static final String OTHER_BACKEND = "*";
+    private static final int MAX_SERIES = 256;
+
+    private final LongSupplier clock;
+    private final long startedAt;
+    private final Map<Key, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public StageMetrics(LongSupplier nanoClock) {
+        this.clock = nanoClock;
+        this.startedAt = nanoClock.getAsLong();
+    }
+
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /** Records the time since {@code startNanos} and returns the current time, to start the next stage. */
+    public long record(String stage, String backendId, String outcome, long startNanos) {
+        long now = clock.getAsLong();
+        Key key = new Key(stage, backendId != null ? backendId : UNKNOWN_BACKEND, outcome);
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            if (histograms.size() >= MAX_SERIES) {
+                // Bounded: once full, new backends share one series per stage and outcome.
+                key = new Key(stage, OTHER_BACKEND, outcome);
+            }
+            histogram = histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+        }
+        histogram.record(now - startNanos);
+        return now;
+    }
+
+    public String report() {
+        StringWriter out = new StringWriter();
+        PrintWriter pw = new PrintWriter(out);
+        dump(pw);
+        pw.flush();
+        return out.toString();
+    }
+
+    public void dump(PrintWriter pw) {
+        double seconds = Math.max(1e-3, (clock.getAsLong() - startedAt) / 1e9);
+        pw.println("Stage latency (ms, over " + Math.round(seconds) + "s):");
+        List<Map.Entry<Key, LatencyHistogram>> entries = new ArrayList<>(histograms.entrySet());
+        entries.sort(Comparator.comparing((Map.Entry<Key, LatencyHistogram> e) -> e.getKey().stage)
+                .thenComparing(e -> e.getKey().backendId)
+                .thenComparing(e -> e.getKey().outcome));
+        for (Map.Entry<Key, LatencyHistogram> entry : entries) {
+            Key key = entry.getKey();
+            LatencyHistogram.Snapshot s = entry.getValue().snapshot();
+            pw.println("  " + key.stage
+                    + " backend=" + key.backendId
+                    + " outcome=" + key.outcome
+                    + " count=" + s.count
+                    + " rate=" + String.format("%.2f/s", s.count / seconds)
+                    + " p50=" + millis(s.percentileMicros(0.50))
+                    + " p90=" + millis(s.percentileMicros(0.90))
+                    + " p99=" + millis(s.percentileMicros(0.99))
+                    + " max=" + millis(s.maxMicros));
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+
+    private static final class Key {
+        final String stage;
+        final String backendId;
+        final String outcome;
+
+        Key(String stage, String backendId, String outcome) {
+            this.stage = stage;
+            this.backendId = backendId;
+            this.outcome = outcome;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return stage.equals(other.stage) && backendId.equals(other.backendId) && outcome.equals(other.outcome);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * stage.hashCode() + backendId.hashCode()) * 31 + outcome.hashCode();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package net.uattest.service;
+
+import java.io.PrintWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks service cold start. Binder calls that arrive before the backend store is loaded, or
+ * that name a backend whose id is still being resolved, are parked here and continue on the
+ * thread that opens the gate, so no binder thread is held while the service starts.
+ */
+public class StartupGate {
+    private final LongSupplier clock;
+    private final long createdAt;
+    private final CompletableFuture<Void> storeReady = new CompletableFuture<>();
+    private final CompletableFuture<Void> idsResolved = new CompletableFuture<>();
+    private volatile long storeReadyAt;
+    private volatile long idsResolvedAt;
+    private final AtomicLong firstTokenAt = new AtomicLong();
+    private final AtomicLong parked = new AtomicLong();
+    private final AtomicLong parkedNanos = new AtomicLong();
+
+    public StartupGate(LongSupplier nanoClock) {
+        this.clock = nanoClock;
+        this.createdAt = nanoClock.getAsLong();
+    }
+
+    public void markStoreReady() {
+        storeReadyAt = clock.getAsLong();
+        storeReady.complete(null);
+    }
+
+    public void markIdsResolved() {
+        idsResolvedAt = clock.getAsLong();
+        idsResolved.complete(null);
+    }
+
+    /** Fails every parked and future wait; for service shutdown. */
+    public void close() {
+        IllegalStateException stopped = new IllegalStateException("Service stopped");
+        storeReady.completeExceptionally(stopped);
+        idsResolved.completeExceptionally(stopped);
+    }
+
+    public boolean idsResolved() {
+        return idsResolved.isDone();
+    }
+
+    public CompletableFuture<Void> whenStoreReady() {
+        return park(storeReady);
+    }
+
+    public CompletableFuture<Void> whenIdsResolved() {
+        return park(idsResolved);
+    }
+
+    public void recordToken() {
+        firstTokenAt.compareAndSet(0, clock.getAsLong());
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("Startup: storeReady=" + since(storeReadyAt)
+                + " idsResolved=" + since(idsResolvedAt)
+                + " firstToken=" + since(firstTokenAt.get())
+                + " parkedCalls=" + parked.get()
+                + " parkedWait=" + TimeUnit.NANOSECONDS.toMillis(parkedNanos.get()) + "ms");
+    }
+
+    private CompletableFuture<Void> park(CompletableFuture<Void> gate) {
+        if (gate.isDone()) {
+            return gate;
+        }
+        long start = clock.getAsLong();
+        parked.incrementAndGet();
+        return gate.whenComplete((ignored, error) -> parkedNanos.addAndGet(clock.getAsLong() - start));
+    }
+
+    private String since(long at) {
+        return at == 0 ? "pending" : TimeUnit.NANOSECONDS.toMillis(at - createdAt) + "ms";
+    }
+}
@@ -0,0 +1,132 @@
+package net.uattest.service;
+
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+public class TokenCache {
+    private static final long EXPIRY_MARGIN_MS = 5_000;
+
+    private final int maxEntries;
+    private final long maxChars;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> backendTtls = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile long defaultTtlMs;
+    private long chars;
+
+    public TokenCache(int maxEntries, long maxChars, long defaultTtlMs, LongSupplier elapsedClock) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        this.defaultTtlMs = defaultTtlMs;
+        this.clock = elapsedClock;
+    }
+
+    public void setDefaultTtl(long ttlMs) {
+        defaultTtlMs = ttlMs;
+    }
+
+    public void setBackendTtl(String backendId, long ttlMs) {
+        backendTtls.put(backendId, ttlMs);
+    }
+
+    public boolean isEnabled(String backendId) {
+        return ttlFor(backendId) > 0;
+    }
+
+    public String get(String backendId, String key) {
+        if (!isEnabled(backendId)) {
+            return null;
+        }
+        long now = clock.getAsLong();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.incrementAndGet();
+                return entry.token;
+            }
+            if (entry != null) {
+                remove(key, entry);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String backendId, String key, TokenResult result, long wallNow) {
+        long ttl = ttlFor(backendId);
+        if (ttl <= 0 || result.token == null) {
+            return;
+        }
+        if (result.expiresAt > 0) {
+            // The backend's expiry can only shorten the configured TTL, never extend it.
+            ttl = Math.min(ttl, result.expiresAt - wallNow - EXPIRY_MARGIN_MS);
+            if (ttl <= 0) {
+                return;
+            }
+        }
+        Entry entry = new Entry(result.token, clock.getAsLong() + ttl);
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                chars -= previous.token.length();
+            }
+            chars += entry.token.length();
+            trim();
+        }
+    }
+
+    public void dump(PrintWriter pw) {
+        long hit = hits.get();
+        long miss = misses.get();
+        int size;
+        long used;
+        synchronized (this) {
+            size = entries.size();
+            used = chars;
+        }
+        pw.println("Token cache: entries=" + size + "/" + maxEntries
+                + " chars=" + used + "/" + maxChars
+                + " hits=" + hit + " misses=" + miss
+                + " evictions=" + evictions.get()
+                + " hitRate=" + (hit + miss == 0 ? "n/a" : String.format("%.1f%%", 100.0 * hit / (hit + miss))));
+    }
+
+    private long ttlFor(String backendId) {
+        Long ttl = backendId != null ? backendTtls.get(backendId) : null;
+        return ttl != null ? ttl : defaultTtlMs;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || chars > maxChars) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            chars -= eldest.getValue().token.length();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            chars -= entry.token.length();
+        }
+    }
+
+    private static class Entry {
+        final String token;
+        final long expiresAt;
+
+        Entry(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
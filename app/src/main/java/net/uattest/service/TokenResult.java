@@ -0,0 +1,25 @@
+package net.uattest.service;
+
+public class TokenResult {
+    public final String token;
+    public final long expiresAt;
+    public final String error;
+
+    public TokenResult(String token, long expiresAt) {
+        this(token, expiresAt, null);
+    }
+
+    private TokenResult(String token, long expiresAt, String error) {
+        this.token = token;
+        this.expiresAt = expiresAt;
+        this.error = error;
+    }
+
+    public static TokenResult failure(String error) {
+        return new TokenResult(null, 0, error == null ? "error" : error);
+    }
+
+    public boolean isSuccess() {
+        return token != null;
+    }
+}
@@ -0,0 +1,49 @@
+package net.uattest.service;
+
+public class TransportConfig {
+    public static final TransportConfig DEFAULT = new TransportConfig(
+            5,
+            5 * 60 * 1000L,
+            10_000,
+            10_000,
+            true,
+            256,
+            64
+    );
+
+    public final int maxIdleConnectionsPerBackend;
+    public final long keepAliveMs;
+    public final int connectTimeoutMs;
+    public final int readTimeoutMs;
+    public final boolean http2Enabled;
+    public final int maxAsyncRequests;
+    public final int maxAsyncRequestsPerBackend;
+
+    public TransportConfig(
+            int maxIdleConnectionsPerBackend,
+            long keepAliveMs,
+            int connectTimeoutMs,
+            int readTimeoutMs,
+            boolean http2Enabled
+    ) {
+        this(maxIdleConnectionsPerBackend, keepAliveMs, connectTimeoutMs, readTimeoutMs, http2Enabled, 256, 64);
+    }
+
+    public TransportConfig(
+            int maxIdleConnectionsPerBackend,
+            long keepAliveMs,
+            int connectTimeoutMs,
+            int readTimeoutMs,
+            boolean http2Enabled,
+            int maxAsyncRequests,
+            int maxAsyncRequestsPerBackend
+    ) {
+        this.maxIdleConnectionsPerBackend = maxIdleConnectionsPerBackend;
+        this.keepAliveMs = keepAliveMs;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.http2Enabled = http2Enabled;
+        this.maxAsyncRequests = maxAsyncRequests;
+        this.maxAsyncRequestsPerBackend = maxAsyncRequestsPerBackend;
+    }
+}
@@ -1,50 +1,220 @@
 package net.uattest.service;
 
-import org.json.JSONArray;
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class UaHttp {
+    private static final int MAX_RESPONSE_BYTES = 64 * 1024;
+    private static final int MAX_BATCH_RESPONSE_BYTES = 512 * 1024;
+    private static final int MAX_ERROR_BYTES = 4 * 1024;
+    private static final int DEFAULT_GZIP_MIN_BYTES = 1024;
+
+    private static volatile HttpTransport transport = new OkHttpTransport(TransportConfig.DEFAULT);
+    private static final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private static volatile CircuitBreaker.Config breakerConfig = new CircuitBreaker.Config();
+    private static volatile CircuitBreaker.Listener breakerListener;
+    private static final Map<String, Set<String>> capabilities = new ConcurrentHashMap<>();
+    private static final CertRefs certRefs = new CertRefs(32);
+    private static volatile int gzipMinBytes = DEFAULT_GZIP_MIN_BYTES;
+
+    public static void setTransport(HttpTransport newTransport) {
+        HttpTransport previous = transport;
+        transport = newTransport;
+        if (previous != newTransport) {
+            previous.shutdown();
+        }
+    }
+
+    public static void setCircuitBreakerConfig(CircuitBreaker.Config config) {
+        breakerConfig = config;
+        breakers.clear();
+    }
+
+    public static void setCircuitBreakerListener(CircuitBreaker.Listener listener) {
+        breakerListener = listener;
+    }
+
+    /** Bodies shorter than this are sent uncompressed even to backends that accept gzip. */
+    public static void setGzipThreshold(int minBytes) {
+        gzipMinBytes = minBytes;
+    }
+
+    /** Records what a backend advertised in {@code /api/v1/info}; called for every fetched or stored entry. */
+    public static void setCapabilities(String baseUrl, Set<String> advertised) {
+        String backendKey = normalize(baseUrl);
+        capabilities.put(backendKey, advertised);
+        if (!advertised.contains(BackendEntry.CAPABILITY_CERT_REFS)) {
+            certRefs.forget(backendKey);
+        }
+    }
+
+    /** Number of certificate fingerprints the backend has acknowledged; for diagnostics. */
+    public static int acknowledgedCertRefs(String baseUrl) {
+        return certRefs.size(normalize(baseUrl));
+    }
+
+    public static String circuitState(String baseUrl) {
+        CircuitBreaker breaker = breakers.get(normalize(baseUrl));
+        return breaker != null ? breaker.state() : CircuitBreaker.CLOSED;
+    }
+
+    public static void releaseBackend(String baseUrl) {
+        String backendKey = normalize(baseUrl);
+        breakers.remove(backendKey);
+        capabilities.remove(backendKey);
+        certRefs.forget(backendKey);
+        transport.evictIdle(backendKey);
+    }
+
     public static BackendInfo fetchBackendInfo(String baseUrl) throws Exception {
-        String url = normalize(baseUrl) + "/api/v1/info";
-        JSONObject response = getJson(url);
-        String backendId = response.getString("backendId");
-        return new BackendInfo(backendId, normalize(baseUrl));
+        String backendKey = normalize(baseUrl);
+        return execute(infoRequest(backendKey), response -> readBackendInfo(backendKey, response));
     }
 
-    public static String postDeviceProcess(
+    public static CompletableFuture<BackendInfo> fetchBackendInfoAsync(String baseUrl) {
+        String backendKey = normalize(baseUrl);
+        return executeAsync(infoRequest(backendKey), response -> readBackendInfo(backendKey, response));
+    }
+
+    public static TokenResult postDeviceProcess(
             String baseUrl,
             String projectId,
             String requestHash,
             List<String> attestationChain,
-            JSONObject deviceMeta
+            byte[] deviceMetaJson
     ) throws Exception {
-        String url = normalize(baseUrl) + "/api/v1/device/process";
-        JSONObject body = new JSONObject();
-        body.put("projectId", projectId);
-        body.put("requestHash", requestHash);
-        JSONArray arr = new JSONArray();
-        for (String cert : attestationChain) {
-            arr.put(cert);
+        String backendKey = normalize(baseUrl);
+        List<String> compacted = compactChain(backendKey, attestationChain);
+        if (compacted != attestationChain) {
+            HttpRequest request = deviceProcessRequest(backendKey, projectId, requestHash, compacted, deviceMetaJson);
+            try {
+                return execute(request, response -> readToken(backendKey, response));
+            } catch (UaHttpException e) {
+                if (!isUnknownCertRef(backendKey, e)) {
+                    throw e;
+                }
+            }
         }
-        body.put("attestationChain", arr);
-        if (deviceMeta != null) {
-            body.put("deviceMeta", deviceMeta);
+        HttpRequest request = deviceProcessRequest(backendKey, projectId, requestHash, attestationChain, deviceMetaJson);
+        return execute(request, response -> readToken(backendKey, response));
+    }
+
+    public static CompletableFuture<TokenResult> postDeviceProcessAsync(
+            String baseUrl,
+            String projectId,
+            String requestHash,
+            List<String> attestationChain,
+            byte[] deviceMetaJson
+    ) {
+        String backendKey = normalize(baseUrl);
+        ResponseReader<TokenResult> reader = response -> readToken(backendKey, response);
+        List<String> compacted = compactChain(backendKey, attestationChain);
+        if (compacted == attestationChain) {
+            return executeAsync(
+                    deviceProcessRequest(backendKey, projectId, requestHash, attestationChain, deviceMetaJson),
+                    reader
+            );
+        }
+        return executeAsync(deviceProcessRequest(backendKey, projectId, requestHash, compacted, deviceMetaJson), reader)
+                .handle((result, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    if (isUnknownCertRef(backendKey, error)) {
+                        return executeAsync(
+                                deviceProcessRequest(backendKey, projectId, requestHash, attestationChain, deviceMetaJson),
+                                reader
+                        );
+                    }
+                    CompletableFuture<TokenResult> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(error);
+                    return failed;
+                })
+                .thenCompose(future -> future);
+    }
+
+    public static List<TokenResult> postDeviceProcessBatch(
+            String baseUrl,
+            String projectId,
+            List<String> requestHashes,
+            List<List<String>> attestationChains,
+            byte[] deviceMetaJson
+    ) throws Exception {
+        String backendKey = normalize(baseUrl);
+        List<List<String>> compacted = null;
+        for (int i = 0; i < attestationChains.size(); i++) {
+            List<String> chain = compactChain(backendKey, attestationChains.get(i));
+            if (chain != attestationChains.get(i)) {
+                if (compacted == null) {
+                    compacted = new ArrayList<>(attestationChains);
+                }
+                compacted.set(i, chain);
+            }
         }
-        JSONObject response = postJson(url, body);
-        return response.getString("token");
+        if (compacted != null) {
+            try {
+                return postBatch(backendKey, projectId, requestHashes, compacted, deviceMetaJson);
+            } catch (UaHttpException e) {
+                if (!isUnknownCertRef(backendKey, e)) {
+                    throw e;
+                }
+            }
+        }
+        return postBatch(backendKey, projectId, requestHashes, attestationChains, deviceMetaJson);
+    }
+
+    private static List<TokenResult> postBatch(
+            String backendKey,
+            String projectId,
+            List<String> requestHashes,
+            List<List<String>> attestationChains,
+            byte[] deviceMetaJson
+    ) throws Exception {
+        HttpRequest request = HttpRequest.post(
+                backendKey,
+                backendKey + "/api/v1/device/process/batch",
+                encode(backendKey, new DeviceProcessBatchBody(projectId, requestHashes, attestationChains, deviceMetaJson)),
+                null,
+                30_000
+        );
+        Map<String, TokenResult> byHash = execute(request, response -> {
+            checkStatus(response);
+            return readBatchResults(backendKey, response.body());
+        });
+        List<TokenResult> results = new ArrayList<>(requestHashes.size());
+        for (String requestHash : requestHashes) {
+            TokenResult result = byHash.get(canonicalHash(requestHash));
+            results.add(result != null ? result : TokenResult.failure("Missing result"));
+        }
+        return results;
     }
 
     public static JSONObject postOemDeviceSubmit(String baseUrl, String token, JSONObject body) throws Exception {
-        return postJsonWithAuth(normalize(baseUrl) + "/api/v1/oem/device/submit", body, token);
+        return execute(oemSubmitRequest(baseUrl, token, body), UaHttp::readJson);
+    }
+
+    public static CompletableFuture<JSONObject> postOemDeviceSubmitAsync(String baseUrl, String token, JSONObject body) {
+        return executeAsync(oemSubmitRequest(baseUrl, token, body), UaHttp::readJson);
     }
 
     public static boolean pingBackend(String baseUrl) {
@@ -56,58 +226,382 @@ public class UaHttp {
         }
     }
 
-    private static JSONObject getJson(String url) throws Exception {
-        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(5000);
-        conn.setReadTimeout(5000);
-        return readJson(conn);
+    private static HttpRequest infoRequest(String backendKey) {
+        return HttpRequest.get(backendKey, backendKey + "/api/v1/info", 10_000);
     }
 
-    private static JSONObject postJson(String url, JSONObject body) throws Exception {
-        return postJsonWithAuth(url, body, null);
+    private static HttpRequest deviceProcessRequest(
+            String backendKey,
+            String projectId,
+            String requestHash,
+            List<String> attestationChain,
+            byte[] deviceMetaJson
+    ) {
+        return HttpRequest.post(
+                backendKey,
+                backendKey + "/api/v1/device/process",
+                encode(backendKey, supports(backendKey, BackendEntry.CAPABILITY_PROTOBUF)
+                        ? new DeviceProcessProtoBody(projectId, requestHash, attestationChain, deviceMetaJson)
+                        : new DeviceProcessBody(projectId, requestHash, attestationChain, deviceMetaJson)),
+                null,
+                20_000
+        );
     }
 
-    private static JSONObject postJsonWithAuth(String url, JSONObject body, String authToken) throws Exception {
-        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-        conn.setRequestMethod("POST");
-        conn.setDoOutput(true);
-        conn.setRequestProperty("Content-Type", "application/json");
-        if (authToken != null) {
-            conn.setRequestProperty("Authorization", "Bearer " + authToken);
-        }
-        conn.setConnectTimeout(10000);
-        conn.setReadTimeout(10000);
+    private static HttpRequest oemSubmitRequest(String baseUrl, String token, JSONObject body) {
+        String backendKey = normalize(baseUrl);
         byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
-        conn.setFixedLengthStreamingMode(bytes.length);
-        try (OutputStream os = conn.getOutputStream()) {
-            os.write(bytes);
+        HttpBody httpBody = encode(backendKey, HttpBody.ofBytes("application/json", bytes));
+        return HttpRequest.post(backendKey, backendKey + "/api/v1/oem/device/submit", httpBody, token, 20_000);
+    }
+
+    private static BackendInfo readBackendInfo(String backendKey, HttpResponse response) throws Exception {
+        checkStatus(response);
+        JsonFieldReader.Fields fields = JsonFieldReader.read(
+                response.body(), MAX_RESPONSE_BYTES, "backendId", "capabilities");
+        if (fields.get(0) == null) {
+            throw new IllegalStateException("Missing backendId");
+        }
+        Set<String> capabilities = parseCapabilities(fields.list(1));
+        setCapabilities(backendKey, capabilities);
+        return new BackendInfo(fields.get(0), backendKey, capabilities);
+    }
+
+    private static boolean supports(String backendKey, String capability) {
+        Set<String> advertised = capabilities.get(backendKey);
+        return advertised != null && advertised.contains(capability);
+    }
+
+    private static List<String> compactChain(String backendKey, List<String> chain) {
+        if (!supports(backendKey, BackendEntry.CAPABILITY_CERT_REFS)) {
+            return chain;
+        }
+        return certRefs.compact(backendKey, chain);
+    }
+
+    /** True if the backend no longer holds a referenced certificate; drops its cached references. */
+    private static boolean isUnknownCertRef(String backendKey, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (!(error instanceof UaHttpException)
+                || !CertRefs.UNKNOWN_CERT_REF.equals(((UaHttpException) error).errorCode)) {
+            return false;
+        }
+        certRefs.forget(backendKey);
+        return true;
+    }
+
+    private static HttpBody encode(String backendKey, HttpBody body) {
+        if (!supports(backendKey, BackendEntry.CAPABILITY_GZIP)) {
+            return body;
+        }
+        try {
+            return GzipBody.compress(body, gzipMinBytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode request body", e);
+        }
+    }
+
+    private static TokenResult readToken(String backendKey, HttpResponse response) throws Exception {
+        checkStatus(response);
+        String contentType = response.header("Content-Type");
+        if (contentType != null && contentType.startsWith(DeviceProcessProtoBody.CONTENT_TYPE)) {
+            DeviceProcessProtoResponse proto = DeviceProcessProtoResponse.parse(response.body(), MAX_RESPONSE_BYTES);
+            if (proto.token == null || proto.token.isEmpty()) {
+                throw new IllegalStateException("Missing token");
+            }
+            certRefs.acknowledge(backendKey, proto.certRefs);
+            return new TokenResult(proto.token, parseExpiry(
+                    proto.expiresAt != 0 ? Long.toString(proto.expiresAt) : null,
+                    proto.expiresIn != 0 ? Long.toString(proto.expiresIn) : null
+            ));
+        }
+        JsonFieldReader.Fields fields = JsonFieldReader.read(
+                response.body(),
+                MAX_RESPONSE_BYTES,
+                "token",
+                "expiresAt",
+                "expiresIn",
+                "certRefs"
+        );
+        if (fields.get(0) == null) {
+            throw new IllegalStateException("Missing token");
+        }
+        certRefs.acknowledge(backendKey, fields.list(3));
+        return new TokenResult(fields.get(0), parseExpiry(fields.get(1), fields.get(2)));
+    }
+
+    private static JSONObject readJson(HttpResponse response) throws Exception {
+        checkStatus(response);
+        return new JSONObject(readAll(response.body(), MAX_RESPONSE_BYTES));
+    }
+
+    private interface ResponseReader<T> {
+        T read(HttpResponse response) throws Exception;
+    }
+
+    private static CircuitBreaker breaker(String backendKey) {
+        return breakers.computeIfAbsent(backendKey, key -> new CircuitBreaker(
+                key,
+                breakerConfig,
+                SystemClock::elapsedRealtime,
+                (changedKey, state) -> {
+                    CircuitBreaker.Listener listener = breakerListener;
+                    if (listener != null) {
+                        listener.onStateChanged(changedKey, state);
+                    }
+                }
+        ));
+    }
+
+    private static <T> T execute(HttpRequest request, ResponseReader<T> reader) throws Exception {
+        CircuitBreaker breaker = breaker(request.backendKey);
+        if (!breaker.tryAcquire()) {
+            throw new CircuitOpenException(request.backendKey, breaker.retryAfterMs());
+        }
+        long start = SystemClock.elapsedRealtime();
+        HttpResponse response;
+        try {
+            response = transport.execute(request);
+        } catch (Exception e) {
+            breaker.onFailure();
+            throw e;
         }
-        return readJson(conn);
+        return read(breaker, response, start, reader);
     }
 
-    private static JSONObject readJson(HttpURLConnection conn) throws Exception {
-        int code = conn.getResponseCode();
-        InputStream stream = code >= 200 && code < 300 ? conn.getInputStream() : conn.getErrorStream();
-        String raw = readAll(stream);
-        if (code < 200 || code >= 300) {
-            throw new RuntimeException("HTTP " + code + ": " + raw);
+    /**
+     * Runs the request on the transport's asynchronous path. The response is read on the
+     * transport's callback thread, so no caller thread waits for the round trip.
+     */
+    private static <T> CompletableFuture<T> executeAsync(HttpRequest request, ResponseReader<T> reader) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CircuitBreaker breaker = breaker(request.backendKey);
+        if (!breaker.tryAcquire()) {
+            result.completeExceptionally(new CircuitOpenException(request.backendKey, breaker.retryAfterMs()));
+            return result;
         }
-        return new JSONObject(raw);
+        long start = SystemClock.elapsedRealtime();
+        CompletableFuture<HttpResponse> call;
+        try {
+            call = transport.executeAsync(request);
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            result.completeExceptionally(e);
+            return result;
+        }
+        call.whenComplete((response, error) -> {
+            if (error != null) {
+                breaker.onFailure();
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error);
+                return;
+            }
+            try {
+                result.complete(read(breaker, response, start, reader));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return result;
     }
 
-    private static String readAll(InputStream input) throws Exception {
+    /**
+     * Reads and closes the response, then records the outcome. A 5xx or a body that fails to
+     * arrive (reset, read timeout, truncated) is a failure, and the call's duration includes the
+     * body, so a backend that stalls after sending headers still counts as slow or failing.
+     */
+    private static <T> T read(CircuitBreaker breaker, HttpResponse response, long start, ResponseReader<T> reader)
+            throws Exception {
+        boolean bodyFailed = false;
+        try (HttpResponse r = response) {
+            return reader.read(r);
+        } catch (IOException e) {
+            bodyFailed = true;
+            throw e;
+        } finally {
+            if (bodyFailed || response.code() >= 500) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess(SystemClock.elapsedRealtime() - start);
+            }
+        }
+    }
+
+    private static Map<String, TokenResult> readBatchResults(String backendKey, InputStream input) throws Exception {
+        Map<String, TokenResult> results = new HashMap<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(
+                new BoundedInputStream(input, MAX_BATCH_RESPONSE_BYTES),
+                StandardCharsets.UTF_8
+        ));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if ("certRefs".equals(field) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                List<String> acknowledged = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() == JsonToken.STRING) {
+                        acknowledged.add(reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endArray();
+                certRefs.acknowledge(backendKey, acknowledged);
+                continue;
+            }
+            if (!"results".equals(field) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String requestHash = null;
+                String token = null;
+                String expiresAt = null;
+                String expiresIn = null;
+                String error = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    JsonToken next = reader.peek();
+                    if (next == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else if ("error".equals(name) && next == JsonToken.BEGIN_OBJECT) {
+                        error = readBatchError(reader);
+                    } else if (next != JsonToken.STRING && next != JsonToken.NUMBER) {
+                        reader.skipValue();
+                    } else if ("requestHash".equals(name)) {
+                        requestHash = reader.nextString();
+                    } else if ("token".equals(name)) {
+                        token = reader.nextString();
+                    } else if ("expiresAt".equals(name)) {
+                        expiresAt = reader.nextString();
+                    } else if ("expiresIn".equals(name)) {
+                        expiresIn = reader.nextString();
+                    } else if ("error".equals(name)) {
+                        error = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                // Backends may echo the hash in another case or without the 0x prefix.
+                requestHash = canonicalHash(requestHash);
+                if (requestHash != null) {
+                    results.put(requestHash, token != null
+                            ? new TokenResult(token, parseExpiry(expiresAt, expiresIn))
+                            : TokenResult.failure(error));
+                }
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return results;
+    }
+
+    private static String canonicalHash(String requestHash) {
+        if (requestHash == null) {
+            return null;
+        }
+        try {
+            return Codec.hexEncode(Codec.decodeRequestHash(requestHash));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String readBatchError(JsonReader reader) throws Exception {
+        String code = null;
+        String message = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() != JsonToken.STRING && reader.peek() != JsonToken.NUMBER) {
+                reader.skipValue();
+            } else if ("code".equals(name)) {
+                code = reader.nextString();
+            } else if ("message".equals(name)) {
+                message = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (message == null) {
+            return code;
+        }
+        return code == null ? message : "[" + code + "] " + message;
+    }
+
+    private static void checkStatus(HttpResponse response) throws Exception {
+        int code = response.code();
+        if (code >= 200 && code < 300) {
+            return;
+        }
+        String raw = readAll(response.body(), MAX_ERROR_BYTES);
+        String errorCode = null;
+        try {
+            errorCode = JsonFieldReader.read(
+                    new ByteArrayInputStream(raw.getBytes(StandardCharsets.UTF_8)),
+                    MAX_ERROR_BYTES,
+                    "code"
+            ).get(0);
+        } catch (Exception ignored) {
+        }
+        throw new UaHttpException(code, errorCode, raw);
+    }
+
+    private static String readAll(InputStream input, int maxBytes) throws Exception {
         if (input == null) return "";
-        StringBuilder sb = new StringBuilder();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            sb.append(line);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = input.read(buffer)) > 0) {
+            if (out.size() + n > maxBytes) {
+                out.write(buffer, 0, maxBytes - out.size());
+                break;
+            }
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Set<String> parseCapabilities(List<String> advertised) {
+        if (advertised.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> capabilities = new HashSet<>();
+        for (String capability : advertised) {
+            capabilities.add(capability.trim());
+        }
+        return Collections.unmodifiableSet(capabilities);
+    }
+
+    private static long parseExpiry(String expiresAt, String expiresIn) {
+        try {
+            if (expiresAt != null) {
+                long value = Long.parseLong(expiresAt);
+                // Accept both epoch seconds and epoch milliseconds.
+                return value < 100_000_000_000L ? value * 1000 : value;
+            }
+            if (expiresIn != null) {
+                return System.currentTimeMillis() + Long.parseLong(expiresIn) * 1000;
+            }
+        } catch (NumberFormatException ignored) {
         }
-        return sb.toString();
+        return 0;
     }
 
-    private static String normalize(String baseUrl) {
+    public static String normalize(String baseUrl) {
         if (baseUrl.endsWith("/")) {
             return baseUrl.substring(0, baseUrl.length() - 1);
         }
@@ -0,0 +1,14 @@
+package net.uattest.service;
+
+public class UaHttpException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public final int status;
+    public final String errorCode;
+
+    public UaHttpException(int status, String errorCode, String detail) {
+        super("HTTP " + status + ": " + detail);
+        this.status = status;
+        this.errorCode = errorCode;
+    }
+}
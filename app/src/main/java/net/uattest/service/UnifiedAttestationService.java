@@ -1,16 +1,27 @@
 package net.uattest.service;
 
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Intent;
 import android.os.Binder;
-import android.os.Build;
 import android.os.IBinder;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class UnifiedAttestationService extends Service {
     public static final int ERROR_INVALID_CALLER = 1;
@@ -19,9 +30,39 @@ public class UnifiedAttestationService extends Service {
     public static final int ERROR_ATTESTATION_FAILED = 4;
     public static final int ERROR_NETWORK = 5;
 
-    private final ExecutorService executor = Executors.newCachedThreadPool();
-    private final RateLimiter rateLimiter = new RateLimiter(20, 60_000);
-    private List<BackendEntry> backends = new ArrayList<>();
+    public static final String ACTION_BIND_BATCH = "net.uattest.service.BIND_BATCH";
+    public static final String ACTION_DIAGNOSTICS = "net.uattest.service.DIAGNOSTICS";
+
+    private static final int MAX_BATCH_SIZE = 16;
+    private static final int BACKEND_MAX_CONCURRENT = 4;
+    private static final int BACKEND_QUEUE_LIMIT = 32;
+    private static final int BACKEND_MAX_IN_FLIGHT = 64;
+    private static final int TOKEN_CACHE_MAX_ENTRIES = 256;
+    private static final long TOKEN_CACHE_MAX_CHARS = 512 * 1024;
+    private static final long TOKEN_CACHE_DEFAULT_TTL_MS = 60_000;
+
+    private final ExecutorService maintenanceExecutor = Executors.newSingleThreadExecutor();
+    private final BackendBulkheads bulkheads = new BackendBulkheads(
+            BACKEND_MAX_CONCURRENT, BACKEND_QUEUE_LIMIT, BACKEND_MAX_IN_FLIGHT);
+    private final SingleFlight<String, String> attestations = new SingleFlight<>();
+    private final BackendSelector selector = new BackendSelector(SystemClock::elapsedRealtime);
+    private final StageMetrics metrics = new StageMetrics(SystemClock::elapsedRealtimeNanos);
+    private final StartupGate startup = new StartupGate(SystemClock::elapsedRealtimeNanos);
+    private final TokenCache tokenCache = new TokenCache(
+            TOKEN_CACHE_MAX_ENTRIES,
+            TOKEN_CACHE_MAX_CHARS,
+            TOKEN_CACHE_DEFAULT_TTL_MS,
+            SystemClock::elapsedRealtime
+    );
+    private final RateLimiter rateLimiter = new RateLimiter(
+            20,
+            60_000,
+            4096,
+            SystemClock::elapsedRealtimeNanos
+    );
+    private BackendRegistry registry;
+    private BroadcastReceiver identityInvalidator;
+    private volatile HealthScheduler healthScheduler;
 
     private final IUnifiedAttestationService.Stub binder = new IUnifiedAttestationService.Stub() {
         @Override
@@ -31,205 +72,669 @@ public class UnifiedAttestationService extends Service {
             } catch (SecurityException e) {
                 return new ArrayList<>();
             }
-            refreshBackends();
-            List<String> ids = new ArrayList<>();
-            for (BackendEntry entry : backends) {
-                if (entry.enabled && entry.backendId != null) {
-                    ids.add(entry.backendId);
-                }
-            }
-            return ids;
+            // Never waits for startup: backends whose ids are still being resolved are not listed yet.
+            return selector.order(registry.snapshot());
         }
 
         @Override
         public void requestIntegrityToken(
-                String backendId,
+                String requestedBackendId,
                 String projectId,
                 String requestHash,
                 IIntegrityTokenCallback callback
         ) {
             int uid = Binder.getCallingUid();
-            if (!rateLimiter.tryAcquire(uid)) {
-                safeError(callback, ERROR_RATE_LIMIT, "Rate limit exceeded");
+            byte[] requestHashBytes;
+            try {
+                requestHashBytes = Codec.decodeRequestHash(requestHash);
+            } catch (IllegalArgumentException e) {
+                safeError(null, callback, ERROR_ATTESTATION_FAILED, e.getMessage());
                 return;
             }
-            try {
-                IdentityVerifier.enforceCaller(UnifiedAttestationService.this, projectId);
-            } catch (SecurityException e) {
-                safeError(callback, ERROR_INVALID_CALLER, e.getMessage());
+            if (!admitCaller(uid, projectId, callback)) {
                 return;
             }
-            executor.submit(() -> {
-                try {
-                    refreshBackends();
-                    BackendEntry entry = findBackend(backendId);
-                    if (entry == null || !entry.enabled) {
-                        safeError(callback, ERROR_BACKEND_NOT_FOUND, "Backend not enabled");
-                        return;
-                    }
-                    byte[] requestHashBytes = HexUtil.decode(requestHash);
-                    String alias = "ua:" + projectId + ":" + backendId;
-                    List<String> chain = KeyAttestationManager.getAttestationChain(
-                            UnifiedAttestationService.this,
-                            alias,
-                            requestHashBytes
-                    );
-                    String token = UaHttp.postDeviceProcess(
-                            entry.url,
-                            projectId,
-                            requestHash,
-                            chain,
-                            buildDeviceMeta()
-                    );
-                    safeSuccess(callback, token);
-                } catch (Exception e) {
-                    Log.e("UAService", "requestIntegrityToken failed", e);
-                    safeError(callback, ERROR_ATTESTATION_FAILED, e.getMessage());
-                }
-            });
+            withBackend(
+                    requestedBackendId,
+                    entry -> requestToken(uid, entry, projectId, requestHash, requestHashBytes, callback),
+                    error -> safeError(null, callback, ERROR_ATTESTATION_FAILED, error.getMessage())
+            );
         }
 
         @Override
         public void requestIntegrityTokenWithChain(
-                String backendId,
+                String requestedBackendId,
                 String projectId,
                 String requestHash,
                 List<String> attestationChain,
                 IIntegrityTokenCallback callback
         ) {
             int uid = Binder.getCallingUid();
-            if (!rateLimiter.tryAcquire(uid)) {
-                safeError(callback, ERROR_RATE_LIMIT, "Rate limit exceeded");
+            try {
+                Codec.decodeRequestHash(requestHash, new byte[Codec.REQUEST_HASH_BYTES], 0);
+            } catch (IllegalArgumentException e) {
+                safeError(null, callback, ERROR_ATTESTATION_FAILED, e.getMessage());
+                return;
+            }
+            if (attestationChain == null || attestationChain.isEmpty()) {
+                safeError(null, callback, ERROR_ATTESTATION_FAILED, "Missing attestation chain");
+                return;
+            }
+            if (!admitCaller(uid, projectId, callback)) {
+                return;
+            }
+            withBackend(
+                    requestedBackendId,
+                    entry -> requestTokenWithChain(uid, entry, projectId, requestHash, attestationChain, callback),
+                    error -> safeError(null, callback, ERROR_ATTESTATION_FAILED, error.getMessage())
+            );
+        }
+    };
+
+    private final IUnifiedAttestationBatchService.Stub batchBinder = new IUnifiedAttestationBatchService.Stub() {
+        @Override
+        public int getMaxBatchSize() {
+            return MAX_BATCH_SIZE;
+        }
+
+        @Override
+        public void requestIntegrityTokens(
+                String requestedBackendId,
+                String projectId,
+                List<String> requestHashes,
+                IIntegrityTokenBatchCallback callback
+        ) {
+            int uid = Binder.getCallingUid();
+            if (requestHashes == null || requestHashes.isEmpty() || requestHashes.size() > MAX_BATCH_SIZE) {
+                safeBatchError(callback, ERROR_ATTESTATION_FAILED,
+                        "Batch must contain 1-" + MAX_BATCH_SIZE + " request hashes");
                 return;
             }
             try {
                 IdentityVerifier.enforceCaller(UnifiedAttestationService.this, projectId);
             } catch (SecurityException e) {
-                safeError(callback, ERROR_INVALID_CALLER, e.getMessage());
+                safeBatchError(callback, ERROR_INVALID_CALLER, e.getMessage());
                 return;
             }
-            executor.submit(() -> {
+            BatchResults batch = new BatchResults(requestHashes);
+            List<Integer> admitted = new ArrayList<>();
+            byte[] scratch = new byte[Codec.REQUEST_HASH_BYTES];
+            for (int i = 0; i < requestHashes.size(); i++) {
                 try {
-                    refreshBackends();
-                    BackendEntry entry = findBackend(backendId);
-                    if (entry == null || !entry.enabled) {
-                        safeError(callback, ERROR_BACKEND_NOT_FOUND, "Backend not enabled");
-                        return;
-                    }
-                    if (attestationChain == null || attestationChain.isEmpty()) {
-                        safeError(callback, ERROR_ATTESTATION_FAILED, "Missing attestation chain");
-                        return;
-                    }
-                    String token = UaHttp.postDeviceProcess(
-                            entry.url,
-                            projectId,
-                            requestHash,
-                            attestationChain,
-                            buildDeviceMeta()
-                    );
-                    safeSuccess(callback, token);
-                } catch (Exception e) {
-                    Log.e("UAService", "requestIntegrityTokenWithChain failed", e);
-                    safeError(callback, ERROR_ATTESTATION_FAILED, e.getMessage());
+                    Codec.decodeRequestHash(requestHashes.get(i), scratch, 0);
+                } catch (IllegalArgumentException e) {
+                    batch.fail(i, ERROR_ATTESTATION_FAILED, e.getMessage());
+                    continue;
                 }
-            });
+                if (!rateLimiter.tryAcquire(uid, projectId)) {
+                    batch.fail(i, ERROR_RATE_LIMIT, "Rate limit exceeded");
+                    continue;
+                }
+                admitted.add(i);
+            }
+            withBackend(
+                    requestedBackendId,
+                    entry -> requestTokens(uid, entry, projectId, batch, admitted, callback),
+                    error -> safeBatchError(callback, ERROR_ATTESTATION_FAILED, error.getMessage())
+            );
+        }
+    };
+
+    private final IUnifiedAttestationDiagnostics.Stub diagnosticsBinder = new IUnifiedAttestationDiagnostics.Stub() {
+        @Override
+        public String getStageLatencyReport() {
+            if (Binder.getCallingUid() != Process.myUid()) {
+                throw new SecurityException("Diagnostics are only available to this app");
+            }
+            return metrics.report();
         }
     };
 
     @Override
     public void onCreate() {
         super.onCreate();
-        backends = BackendStore.load(this);
-        executor.submit(this::resolveBackendIds);
-        scheduleHealthChecks();
+        registry = new BackendRegistry(this);
+        identityInvalidator = IdentityVerifier.registerInvalidation(this);
+        UaHttp.setCircuitBreakerListener(this::onCircuitStateChanged);
+        // Everything that touches disk or network runs off the main thread; binder calls wait on the gate.
+        maintenanceExecutor.execute(this::start);
+    }
+
+    private void start() {
+        try {
+            applyConfig(ConfigReader.load());
+            registry.snapshot();
+        } catch (RuntimeException e) {
+            Log.e("UAService", "Startup failed", e);
+        } finally {
+            startup.markStoreReady();
+        }
+        try {
+            resolveBackendIds();
+        } catch (RuntimeException e) {
+            // Parked requests must not wait for lookups that were never started.
+            Log.e("UAService", "Resolving backendIds failed", e);
+            startup.markIdsResolved();
+        }
+        if (!maintenanceExecutor.isShutdown()) {
+            healthScheduler = new HealthScheduler(this, registry);
+            healthScheduler.start();
+        }
+    }
+
+    private void applyConfig(ConfigReader.Config config) {
+        for (ConfigReader.RateLimitRule rule : config.rateLimits) {
+            try {
+                if (rule.projectId != null) {
+                    rateLimiter.setProjectLimit(rule.projectId, rule.requests, rule.windowMs);
+                }
+                if (rule.backendId != null) {
+                    rateLimiter.setBackendLimit(rule.backendId, rule.requests, rule.windowMs);
+                }
+            } catch (IllegalArgumentException e) {
+                Log.w("UAService", "Ignoring invalid rate limit", e);
+            }
+        }
+        for (ConfigReader.TokenCacheRule rule : config.tokenCacheRules) {
+            if (rule.backendId != null) {
+                tokenCache.setBackendTtl(rule.backendId, rule.ttlMs);
+            } else {
+                tokenCache.setDefaultTtl(rule.ttlMs);
+            }
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        if (identityInvalidator != null) {
+            unregisterReceiver(identityInvalidator);
+            identityInvalidator = null;
+        }
+        if (healthScheduler != null) {
+            healthScheduler.stop();
+        }
+        UaHttp.setCircuitBreakerListener(null);
+        startup.close();
+        bulkheads.shutdown();
+        maintenanceExecutor.shutdownNow();
+        super.onDestroy();
     }
 
     @Override
     public IBinder onBind(Intent intent) {
+        if (ACTION_BIND_BATCH.equals(intent.getAction())) {
+            return batchBinder;
+        }
+        if (ACTION_DIAGNOSTICS.equals(intent.getAction())) {
+            return diagnosticsBinder;
+        }
         return binder;
     }
 
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        startup.dump(pw);
+        IdentityVerifier.dump(pw);
+        bulkheads.dump(pw);
+        attestations.dump(pw, "Attestation requests");
+        tokenCache.dump(pw);
+        pw.println("Backend capabilities:");
+        for (BackendEntry entry : registry.snapshot().entries) {
+            pw.println("  " + entry.backendId + " " + entry.capabilities
+                    + " ackedCertRefs=" + UaHttp.acknowledgedCertRefs(entry.url));
+        }
+        selector.dump(pw);
+        metrics.dump(pw);
+    }
+
+    /** Resolves all unknown backendIds concurrently, then opens the startup gate for them. */
     private void resolveBackendIds() {
-        boolean changed = false;
-        for (BackendEntry entry : backends) {
-            if (entry.backendId == null) {
-                try {
-                    BackendInfo info = UaHttp.fetchBackendInfo(entry.url);
-                    entry.backendId = info.backendId;
-                    entry.lastStatus = "ok";
-                    entry.lastCheckedAt = System.currentTimeMillis();
-                    changed = true;
-                } catch (Exception e) {
-                    entry.lastStatus = "unreachable";
-                    entry.lastCheckedAt = System.currentTimeMillis();
-                    Log.w("UAService", "Failed to resolve backendId for " + entry.url, e);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (BackendEntry entry : registry.snapshot().entries) {
+            if (entry.backendId != null) {
+                continue;
+            }
+            pending.add(UaHttp.fetchBackendInfoAsync(entry.url).handleAsync((info, error) -> {
+                if (error != null) {
+                    BackendStore.updateStatus(this, entry.url, "unreachable", System.currentTimeMillis());
+                    Log.w("UAService", "Failed to resolve backendId for " + entry.url, unwrap(error));
+                    return null;
+                }
+                BackendStore.update(this, entry.url, stored -> {
+                    stored.backendId = info.backendId;
+                    stored.capabilities = info.capabilities;
+                    stored.lastStatus = "ok";
+                    stored.lastCheckedAt = System.currentTimeMillis();
+                });
+                return null;
+            }, maintenanceExecutor));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, error) -> startup.markIdsResolved());
+    }
+
+    private void onCircuitStateChanged(String backendKey, String state) {
+        Log.i("UAService", "Circuit for " + backendKey + " is now " + state);
+        try {
+            maintenanceExecutor.execute(() -> {
+                for (BackendEntry entry : registry.snapshot().entries) {
+                    if (backendKey.equals(UaHttp.normalize(entry.url)) && !state.equals(entry.lastStatus)) {
+                        BackendStore.updateStatus(this, entry.url, state, System.currentTimeMillis());
+                    }
                 }
+            });
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    private void runBatch(
+            BackendEntry entry,
+            String projectId,
+            BatchResults batch,
+            List<Integer> pending,
+            IIntegrityTokenBatchCallback callback
+    ) {
+        String alias = "ua:" + projectId + ":" + entry.backendId;
+        List<Integer> attested = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        List<List<String>> chains = new ArrayList<>();
+        for (int index : pending) {
+            String requestHash = batch.requestHashes.get(index);
+            try {
+                chains.add(KeyAttestationManager.getAttestationChain(
+                        this, alias, Codec.decodeRequestHash(requestHash), metrics, entry.backendId));
+                hashes.add(requestHash);
+                attested.add(index);
+            } catch (Exception e) {
+                Log.e("UAService", "Batch attestation failed", e);
+                batch.fail(index, ERROR_ATTESTATION_FAILED, e.getMessage());
             }
         }
-        if (changed) {
-            BackendStore.save(this, backends);
+        if (!hashes.isEmpty()) {
+            try {
+                List<TokenResult> results = entry.supports(BackendEntry.CAPABILITY_BATCH)
+                        ? postDeviceProcessBatch(entry, projectId, hashes, chains)
+                        : postEach(entry, projectId, hashes, chains);
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < results.size(); i++) {
+                    TokenResult result = results.get(i);
+                    int index = attested.get(i);
+                    if (result.isSuccess()) {
+                        tokenCache.put(entry.backendId, tokenKey(entry.backendId, projectId, hashes.get(i)), result, now);
+                        batch.succeed(index, result.token);
+                    } else {
+                        batch.fail(index, ERROR_ATTESTATION_FAILED, result.error);
+                    }
+                }
+            } catch (Exception e) {
+                Log.e("UAService", "Batch request failed", e);
+                for (int index : attested) {
+                    batch.fail(index, errorCode(e), e.getMessage());
+                }
+            }
         }
+        deliverBatch(entry.backendId, batch, callback);
     }
 
-    private BackendEntry findBackend(String backendId) {
-        for (BackendEntry entry : backends) {
-            if (backendId != null && backendId.equals(entry.backendId)) {
-                return entry;
+    private List<TokenResult> postEach(
+            BackendEntry entry,
+            String projectId,
+            List<String> hashes,
+            List<List<String>> chains
+    ) {
+        List<TokenResult> results = new ArrayList<>(hashes.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            try {
+                results.add(postDeviceProcess(entry, projectId, hashes.get(i), chains.get(i)));
+            } catch (Exception e) {
+                results.add(TokenResult.failure(e.getMessage()));
             }
         }
-        return null;
+        return results;
     }
 
-    private void refreshBackends() {
-        backends = BackendStore.load(this);
+    private void requestToken(
+            int uid,
+            BackendEntry entry,
+            String projectId,
+            String requestHash,
+            byte[] requestHashBytes,
+            IIntegrityTokenCallback callback
+    ) {
+        if (entry == null) {
+            safeError(null, callback, ERROR_BACKEND_NOT_FOUND, "Backend not enabled");
+            return;
+        }
+        String backendId = entry.backendId;
+        if (!admitBackend(uid, projectId, backendId, callback)) {
+            return;
+        }
+        String key = tokenKey(backendId, projectId, requestHash);
+        String cached = tokenCache.get(backendId, key);
+        if (cached != null) {
+            safeSuccess(backendId, callback, cached);
+            return;
+        }
+        attestations.executeAsync(key, task -> bulkheads.execute(backendId, task), () -> {
+            String alias = "ua:" + projectId + ":" + backendId;
+            List<String> chain = KeyAttestationManager.getAttestationChain(
+                    this,
+                    alias,
+                    requestHashBytes,
+                    metrics,
+                    backendId
+            );
+            return postDeviceProcessAsync(entry, projectId, requestHash, chain).thenApply(result -> {
+                tokenCache.put(backendId, key, result, System.currentTimeMillis());
+                return result.token;
+            });
+        }).whenComplete((token, error) -> {
+            if (error == null) {
+                safeSuccess(backendId, callback, token);
+            } else if (unwrap(error) instanceof RejectedExecutionException) {
+                safeError(backendId, callback, ERROR_RATE_LIMIT, "Backend busy");
+            } else {
+                Throwable cause = unwrap(error);
+                Log.e("UAService", "requestIntegrityToken failed", cause);
+                safeError(backendId, callback, errorCode(cause), cause.getMessage());
+            }
+        });
     }
 
-    private void scheduleHealthChecks() {
-        executor.submit(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(15 * 60 * 1000L);
-                } catch (InterruptedException ignored) {
-                }
-                boolean changed = false;
-                for (BackendEntry entry : backends) {
-                    boolean ok = UaHttp.pingBackend(entry.url);
-                    entry.lastStatus = ok ? "ok" : "unreachable";
-                    entry.lastCheckedAt = System.currentTimeMillis();
-                    changed = true;
-                }
-                if (changed) {
-                    BackendStore.save(this, backends);
-                }
+    private void requestTokenWithChain(
+            int uid,
+            BackendEntry entry,
+            String projectId,
+            String requestHash,
+            List<String> attestationChain,
+            IIntegrityTokenCallback callback
+    ) {
+        if (entry == null) {
+            safeError(null, callback, ERROR_BACKEND_NOT_FOUND, "Backend not enabled");
+            return;
+        }
+        String backendId = entry.backendId;
+        if (!admitBackend(uid, projectId, backendId, callback)) {
+            return;
+        }
+        // The chain is already built, so there is nothing to run on a bulkhead thread.
+        postDeviceProcessAsync(entry, projectId, requestHash, attestationChain).whenComplete((result, error) -> {
+            if (error == null) {
+                safeSuccess(backendId, callback, result.token);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (cause instanceof RejectedExecutionException) {
+                safeError(backendId, callback, ERROR_RATE_LIMIT, "Backend busy");
+            } else {
+                Log.e("UAService", "requestIntegrityTokenWithChain failed", cause);
+                safeError(backendId, callback, errorCode(cause), cause.getMessage());
             }
         });
     }
 
-    private org.json.JSONObject buildDeviceMeta() {
-        org.json.JSONObject meta = new org.json.JSONObject();
+    private void requestTokens(
+            int uid,
+            BackendEntry entry,
+            String projectId,
+            BatchResults batch,
+            List<Integer> admitted,
+            IIntegrityTokenBatchCallback callback
+    ) {
+        if (entry == null) {
+            safeBatchError(callback, ERROR_BACKEND_NOT_FOUND, "Backend not enabled");
+            return;
+        }
+        String backendId = entry.backendId;
+        List<Integer> pending = new ArrayList<>();
+        for (int index : admitted) {
+            if (!rateLimiter.tryAcquireBackend(uid, projectId, backendId)) {
+                batch.fail(index, ERROR_RATE_LIMIT, "Rate limit exceeded");
+                continue;
+            }
+            String cached = tokenCache.get(backendId, tokenKey(backendId, projectId, batch.requestHashes.get(index)));
+            if (cached != null) {
+                batch.succeed(index, cached);
+            } else {
+                pending.add(index);
+            }
+        }
+        if (pending.isEmpty()) {
+            deliverBatch(backendId, batch, callback);
+            return;
+        }
         try {
-            meta.put("manufacturer", Build.MANUFACTURER);
-            meta.put("brand", Build.BRAND);
-            meta.put("model", Build.MODEL);
-            meta.put("device", Build.DEVICE);
-            meta.put("buildFingerprint", Build.FINGERPRINT);
+            bulkheads.execute(backendId, () -> runBatch(entry, projectId, batch, pending, callback));
+        } catch (RejectedExecutionException e) {
+            for (int index : pending) {
+                batch.fail(index, ERROR_RATE_LIMIT, "Backend busy");
+            }
+            deliverBatch(backendId, batch, callback);
+        }
+    }
+
+    /** Verifies the caller owns {@code projectId}, then charges its rate limit, before any backend lookup. */
+    private boolean admitCaller(int uid, String projectId, IIntegrityTokenCallback callback) {
+        long start = metrics.now();
+        try {
+            IdentityVerifier.enforceCaller(this, projectId);
+        } catch (SecurityException e) {
+            metrics.record(StageMetrics.IDENTITY, null, StageMetrics.REJECTED, start);
+            safeError(null, callback, ERROR_INVALID_CALLER, e.getMessage());
+            return false;
+        }
+        start = metrics.record(StageMetrics.IDENTITY, null, StageMetrics.OK, start);
+        if (!rateLimiter.tryAcquire(uid, projectId)) {
+            metrics.record(StageMetrics.RATE_LIMIT, null, StageMetrics.REJECTED, start);
+            safeError(null, callback, ERROR_RATE_LIMIT, "Rate limit exceeded");
+            return false;
+        }
+        metrics.record(StageMetrics.RATE_LIMIT, null, StageMetrics.OK, start);
+        return true;
+    }
+
+    private boolean admitBackend(int uid, String projectId, String backendId, IIntegrityTokenCallback callback) {
+        long start = metrics.now();
+        if (rateLimiter.tryAcquireBackend(uid, projectId, backendId)) {
+            return true;
+        }
+        metrics.record(StageMetrics.RATE_LIMIT, backendId, StageMetrics.REJECTED, start);
+        safeError(backendId, callback, ERROR_RATE_LIMIT, "Rate limit exceeded");
+        return false;
+    }
+
+    /**
+     * Passes the enabled entry for {@code backendId}, or null, to {@code then}. During cold start
+     * the request is parked on the startup gate and continues on the thread that opens it, instead
+     * of holding the binder thread.
+     */
+    private void withBackend(String backendId, Consumer<BackendEntry> then, Consumer<Throwable> failed) {
+        startup.whenStoreReady()
+                .thenCompose(ready -> {
+                    BackendEntry entry = findBackend(backendId);
+                    if (entry != null || startup.idsResolved()) {
+                        return CompletableFuture.completedFuture(entry);
+                    }
+                    // The backend may be one whose id is still being fetched from /api/v1/info.
+                    return startup.whenIdsResolved().thenApply(resolved -> findBackend(backendId));
+                })
+                .thenAccept(entry -> then.accept(entry != null && entry.enabled ? entry : null))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        Log.e("UAService", "Request failed before reaching a backend", cause);
+                        failed.accept(cause);
+                    }
+                });
+    }
+
+    private BackendEntry findBackend(String backendId) {
+        BackendRegistry.Snapshot snapshot = registry.snapshot();
+        return BackendSelector.AUTO.equals(backendId) ? selector.best(snapshot) : snapshot.get(backendId);
+    }
+
+    private TokenResult postDeviceProcess(
+            BackendEntry entry,
+            String projectId,
+            String requestHash,
+            List<String> chain
+    ) throws Exception {
+        long start = metrics.now();
+        try {
+            TokenResult result = UaHttp.postDeviceProcess(entry.url, projectId, requestHash, chain, DeviceMeta.json());
+            recordHttp(entry.backendId, StageMetrics.OK, start);
+            return result;
         } catch (Exception e) {
-            Log.w("UAService", "Failed to build device meta", e);
+            recordHttp(entry.backendId, StageMetrics.ERROR, start);
+            throw e;
         }
-        return meta;
     }
 
-    private void safeSuccess(IIntegrityTokenCallback callback, String token) {
+    private CompletableFuture<TokenResult> postDeviceProcessAsync(
+            BackendEntry entry,
+            String projectId,
+            String requestHash,
+            List<String> chain
+    ) {
+        CompletableFuture<TokenResult> result;
+        try {
+            bulkheads.acquireInFlight(entry.backendId);
+        } catch (RejectedExecutionException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+        long start = metrics.now();
+        try {
+            result = UaHttp.postDeviceProcessAsync(entry.url, projectId, requestHash, chain, DeviceMeta.json());
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+        return result.whenComplete((token, error) -> {
+            bulkheads.releaseInFlight(entry.backendId);
+            recordHttp(entry.backendId, error == null ? StageMetrics.OK : StageMetrics.ERROR, start);
+        });
+    }
+
+    private List<TokenResult> postDeviceProcessBatch(
+            BackendEntry entry,
+            String projectId,
+            List<String> hashes,
+            List<List<String>> chains
+    ) throws Exception {
+        long start = metrics.now();
+        try {
+            List<TokenResult> results = UaHttp.postDeviceProcessBatch(
+                    entry.url, projectId, hashes, chains, DeviceMeta.json());
+            recordHttp(entry.backendId, StageMetrics.OK, start);
+            return results;
+        } catch (Exception e) {
+            recordHttp(entry.backendId, StageMetrics.ERROR, start);
+            throw e;
+        }
+    }
+
+    private void recordHttp(String backendId, String outcome, long start) {
+        long end = metrics.record(StageMetrics.HTTP, backendId, outcome, start);
+        selector.record(backendId, TimeUnit.NANOSECONDS.toMillis(end - start), StageMetrics.OK.equals(outcome));
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static int errorCode(Throwable error) {
+        if (error instanceof CircuitOpenException || error instanceof IOException) {
+            return ERROR_NETWORK;
+        }
+        return ERROR_ATTESTATION_FAILED;
+    }
+
+    private static String tokenKey(String backendId, String projectId, String requestHash) {
+        return backendId + '\n' + projectId + '\n' + requestHash;
+    }
+
+    private void safeBatchError(IIntegrityTokenBatchCallback callback, int code, String message) {
+        long start = metrics.now();
+        String outcome = StageMetrics.OK;
+        try {
+            callback.onError(code, message == null ? "error" : message);
+        } catch (Exception ignored) {
+            outcome = StageMetrics.ERROR;
+        }
+        metrics.record(StageMetrics.CALLBACK, null, outcome, start);
+    }
+
+    private void deliverBatch(String backendId, BatchResults batch, IIntegrityTokenBatchCallback callback) {
+        for (String token : batch.tokens) {
+            if (token != null) {
+                startup.recordToken();
+                break;
+            }
+        }
+        long start = metrics.now();
+        String outcome = batch.deliver(callback) ? StageMetrics.OK : StageMetrics.ERROR;
+        metrics.record(StageMetrics.CALLBACK, backendId, outcome, start);
+    }
+
+    private void safeSuccess(String backendId, IIntegrityTokenCallback callback, String token) {
+        long start = metrics.now();
+        String outcome = StageMetrics.OK;
+        startup.recordToken();
         try {
             callback.onSuccess(token);
         } catch (Exception ignored) {
+            outcome = StageMetrics.ERROR;
         }
+        metrics.record(StageMetrics.CALLBACK, backendId, outcome, start);
     }
 
-    private void safeError(IIntegrityTokenCallback callback, int code, String message) {
+    private void safeError(String backendId, IIntegrityTokenCallback callback, int code, String message) {
+        long start = metrics.now();
+        String outcome = StageMetrics.OK;
         try {
             callback.onError(code, message == null ? "error" : message);
         } catch (Exception ignored) {
+            outcome = StageMetrics.ERROR;
+        }
+        metrics.record(StageMetrics.CALLBACK, backendId, outcome, start);
+    }
+
+    private static class BatchResults {
+        final List<String> requestHashes;
+        final String[] tokens;
+        final int[] errorCodes;
+        final String[] errorMessages;
+
+        BatchResults(List<String> requestHashes) {
+            this.requestHashes = requestHashes;
+            this.tokens = new String[requestHashes.size()];
+            this.errorCodes = new int[requestHashes.size()];
+            this.errorMessages = new String[requestHashes.size()];
+        }
+
+        void succeed(int index, String token) {
+            tokens[index] = token;
+        }
+
+        void fail(int index, int code, String message) {
+            errorCodes[index] = code;
+            errorMessages[index] = message == null ? "error" : message;
+        }
+
+        boolean deliver(IIntegrityTokenBatchCallback callback) {
+            try {
+                callback.onResults(
+                        requestHashes,
+                        Arrays.asList(tokens),
+                        errorCodes,
+                        Arrays.asList(errorMessages)
+                );
+                return true;
+            } catch (Exception ignored) {
+                return false;
+            }
         }
     }
 }
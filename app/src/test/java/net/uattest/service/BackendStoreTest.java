@@ -0,0 +1,171 @@
+package net.uattest.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class BackendStoreTest {
+    private static final String A = "https://a.example/";
+    private static final String B = "https://b.example/";
+
+    private Context context;
+    private File file;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        file = new File(context.getFilesDir(), "backends.db");
+    }
+
+    @Test
+    public void migratesEveryFieldFromLegacyPrefs() throws IOException {
+        BackendEntry a = new BackendEntry("backend-a", A, true);
+        a.lastStatus = "ok";
+        a.lastCheckedAt = 1_700_000_000_000L;
+        a.capabilities = Set.of(BackendEntry.CAPABILITY_BATCH, BackendEntry.CAPABILITY_CERT_REFS);
+        BackendEntry b = new BackendEntry(null, B, false);
+        SharedPreferences prefs = legacyPrefs();
+        prefs.edit().putString("backend_list", BackendCodec.encode(List.of(a, b))).commit();
+
+        List<BackendEntry> loaded = BackendStore.load(context);
+
+        assertEquals(2, loaded.size());
+        assertSameEntry(a, loaded.get(0));
+        assertSameEntry(b, loaded.get(1));
+        assertFalse(prefs.contains("backend_list"));
+        // The migrated log holds the same entries when read back from disk.
+        List<BackendEntry> onDisk = replayFile();
+        assertSameEntry(a, onDisk.get(0));
+        assertSameEntry(b, onDisk.get(1));
+    }
+
+    @Test
+    public void compactionReadsBackIdentically() throws IOException {
+        BackendEntry a = new BackendEntry("backend-a", A, true);
+        a.capabilities = Set.of(BackendEntry.CAPABILITY_GZIP);
+        BackendStore.put(context, a);
+        BackendStore.put(context, new BackendEntry("backend-b", B, false));
+
+        long longest = 0;
+        boolean compacted = false;
+        for (int i = 1; i <= 2_000 && !compacted; i++) {
+            assertTrue(BackendStore.updateStatus(context, A, i % 2 == 0 ? "ok" : "down", i));
+            long length = file.length();
+            compacted = length < longest;
+            longest = Math.max(longest, length);
+        }
+
+        assertTrue("Log was never compacted", compacted);
+        List<BackendEntry> loaded = BackendStore.load(context);
+        List<BackendEntry> onDisk = replayFile();
+        assertEquals(loaded.size(), onDisk.size());
+        for (int i = 0; i < loaded.size(); i++) {
+            assertSameEntry(loaded.get(i), onDisk.get(i));
+        }
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void truncatesTornTailAndKeepsAppending() throws IOException {
+        BackendStore.put(context, new BackendEntry("backend-a", A, true));
+        long valid = file.length();
+        byte[] torn = BackendLogCodec.encodePut(new BackendEntry("backend-b", B, true));
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(torn, 0, torn.length - 3);
+        }
+
+        List<BackendEntry> loaded = BackendStore.load(context);
+
+        assertEquals(1, loaded.size());
+        assertEquals(A, loaded.get(0).url);
+        assertEquals(valid, file.length());
+        BackendStore.put(context, new BackendEntry("backend-b", B, true));
+        assertEquals(2, replayFile().size());
+    }
+
+    @Test
+    public void setsAsideStoreWithUnknownVersion() throws IOException {
+        BackendStore.put(context, new BackendEntry("backend-a", A, true));
+        byte[] original = Files.readAllBytes(file.toPath());
+        byte[] newer = original.clone();
+        ByteBuffer.wrap(newer).putInt(4, BackendLogCodec.VERSION + 1);
+        Files.write(file.toPath(), newer);
+
+        List<BackendEntry> loaded = BackendStore.load(context);
+
+        // No config on the host, so the store falls back to an empty default list.
+        assertTrue(loaded.isEmpty());
+        File bad = new File(file.getPath() + ".bad");
+        assertArrayEquals(newer, Files.readAllBytes(bad.toPath()));
+        assertTrue(replayFile().isEmpty());
+    }
+
+    @Test
+    public void removeAndUpdateAreLogged() throws IOException {
+        BackendStore.put(context, new BackendEntry("backend-a", A, true));
+        BackendStore.put(context, new BackendEntry("backend-b", B, true));
+        assertTrue(BackendStore.update(context, A, entry -> entry.enabled = false));
+        BackendStore.remove(context, B);
+
+        List<BackendEntry> onDisk = replayFile();
+
+        assertEquals(1, onDisk.size());
+        assertFalse(onDisk.get(0).enabled);
+        assertFalse(BackendStore.update(context, B, entry -> entry.enabled = true));
+        assertNull(findUrl(BackendStore.load(context), B));
+    }
+
+    private SharedPreferences legacyPrefs() {
+        return context.getSharedPreferences("ua_backends", Context.MODE_PRIVATE);
+    }
+
+    private List<BackendEntry> replayFile() throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        Map<String, BackendEntry> entries = new LinkedHashMap<>();
+        assertEquals(data.length, BackendLogCodec.replay(data, data.length, entries));
+        return new ArrayList<>(entries.values());
+    }
+
+    private static BackendEntry findUrl(List<BackendEntry> entries, String url) {
+        for (BackendEntry entry : entries) {
+            if (entry.url.equals(url)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static void assertSameEntry(BackendEntry expected, BackendEntry actual) {
+        assertEquals(expected.url, actual.url);
+        assertEquals(expected.backendId, actual.backendId);
+        assertEquals(expected.enabled, actual.enabled);
+        assertEquals(expected.lastStatus, actual.lastStatus);
+        assertEquals(expected.lastCheckedAt, actual.lastCheckedAt);
+        assertEquals(expected.capabilities, actual.capabilities);
+    }
+}
@@ -0,0 +1,197 @@
+package net.uattest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CircuitBreakerTest {
+    private long now;
+    private final List<String> transitions = new ArrayList<>();
+    private CircuitBreaker.Config config;
+
+    @Before
+    public void setUp() {
+        now = 1_000;
+        config = new CircuitBreaker.Config();
+        config.windowSize = 10;
+        config.minimumCalls = 4;
+        config.failureRateThreshold = 0.5;
+        config.slowCallRateThreshold = 0.75;
+        config.slowCallMs = 1_000;
+        config.openMs = 100;
+        config.maxOpenMs = 350;
+        config.halfOpenCalls = 2;
+    }
+
+    @Test
+    public void staysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < config.minimumCalls - 1; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+
+        assertEquals(CircuitBreaker.CLOSED, breaker.state());
+        assertTrue(transitions.isEmpty());
+    }
+
+    @Test
+    public void opensAtFailureRate() {
+        CircuitBreaker breaker = breaker();
+        breaker.onSuccess(10);
+        breaker.onSuccess(10);
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.CLOSED, breaker.state());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(config.openMs, breaker.retryAfterMs());
+        assertEquals(List.of(CircuitBreaker.OPEN), transitions);
+    }
+
+    @Test
+    public void opensAtSlowCallRate() {
+        CircuitBreaker breaker = breaker();
+        breaker.onSuccess(10);
+        breaker.onSuccess(config.slowCallMs);
+        breaker.onSuccess(config.slowCallMs + 1);
+        assertEquals(CircuitBreaker.CLOSED, breaker.state());
+
+        breaker.onSuccess(config.slowCallMs * 2);
+
+        assertEquals(CircuitBreaker.OPEN, breaker.state());
+    }
+
+    @Test
+    public void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = breaker();
+        breaker.onFailure();
+        for (int i = 0; i < config.windowSize; i++) {
+            breaker.onSuccess(10);
+        }
+        fail(breaker, 3);
+        // The first failure has been pushed out: 7 successes and 3 failures.
+        assertEquals(CircuitBreaker.CLOSED, breaker.state());
+
+        fail(breaker, 2);
+
+        assertEquals(CircuitBreaker.OPEN, breaker.state());
+    }
+
+    @Test
+    public void halfOpenTrialsCloseTheCircuit() {
+        CircuitBreaker breaker = open();
+        now += config.openMs - 1;
+        assertFalse(breaker.tryAcquire());
+        now += 1;
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquire());
+        // Trials are exhausted until the ones in flight report back.
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess(10);
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess(10);
+
+        assertEquals(CircuitBreaker.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(List.of(CircuitBreaker.OPEN, CircuitBreaker.HALF_OPEN, CircuitBreaker.CLOSED), transitions);
+    }
+
+    @Test
+    public void closingResetsTheWindow() {
+        CircuitBreaker breaker = open();
+        now += config.openMs;
+        passTrials(breaker);
+
+        // The failures that opened the circuit no longer count.
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void failedTrialReopensWithDoubledBackoffUpToCap() {
+        CircuitBreaker breaker = open();
+        long expected = config.openMs;
+        for (int round = 0; round < 4; round++) {
+            now += expected;
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+            expected = Math.min(config.maxOpenMs, expected * 2);
+
+            assertEquals(CircuitBreaker.OPEN, breaker.state());
+            assertEquals("round " + round, expected, breaker.retryAfterMs());
+        }
+        // 100 -> 200 -> 350 (capped) -> 350.
+        assertEquals(config.maxOpenMs, expected);
+    }
+
+    @Test
+    public void slowTrialReopens() {
+        CircuitBreaker breaker = open();
+        now += config.openMs;
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onSuccess(config.slowCallMs);
+
+        assertEquals(CircuitBreaker.OPEN, breaker.state());
+        assertEquals(config.openMs * 2, breaker.retryAfterMs());
+    }
+
+    @Test
+    public void backoffResetsAfterClosing() {
+        CircuitBreaker breaker = open();
+        now += config.openMs;
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        now += config.openMs * 2;
+        passTrials(breaker);
+        assertEquals(CircuitBreaker.CLOSED, breaker.state());
+
+        fail(breaker, config.minimumCalls);
+
+        assertEquals(CircuitBreaker.OPEN, breaker.state());
+        assertEquals(config.openMs, breaker.retryAfterMs());
+    }
+
+    private CircuitBreaker breaker() {
+        return new CircuitBreaker("https://backend.example", config, () -> now,
+                (backendKey, state) -> transitions.add(state));
+    }
+
+    private CircuitBreaker open() {
+        CircuitBreaker breaker = breaker();
+        fail(breaker, config.minimumCalls);
+        assertEquals(CircuitBreaker.OPEN, breaker.state());
+        return breaker;
+    }
+
+    private static void fail(CircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.onFailure();
+        }
+    }
+
+    private void passTrials(CircuitBreaker breaker) {
+        for (int i = 0; i < config.halfOpenCalls; i++) {
+            assertTrue(breaker.tryAcquire());
+        }
+        for (int i = 0; i < config.halfOpenCalls; i++) {
+            breaker.onSuccess(10);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package net.uattest.service;
+
+import android.security.keystore.KeyGenParameterSpec;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyPairGeneratorSpi;
+import java.security.KeyStoreSpi;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JCA provider registered as "AndroidKeyStore" so KeyAttestationManager and DeviceSubmitHelper run
+ * unchanged on the JVM. Keys are software keys; each leaf carries the attestation challenge in
+ * the key attestation extension and chains to a fixed fake intermediate and root.
+ */
+public class FakeAndroidKeyStore extends Provider {
+    private static final long serialVersionUID = 1L;
+
+    public static final String NAME = "AndroidKeyStore";
+
+    private static final String ATTESTATION_OID = "1.3.6.1.4.1.11129.2.1.17";
+    private static final Provider BC = new BouncyCastleProvider();
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private static final AtomicLong serials = new AtomicLong(1);
+    private static final AtomicLong generated = new AtomicLong();
+    private static final long VALIDITY_MS = 365L * 24 * 60 * 60 * 1000;
+    private static Authority authority;
+
+    public FakeAndroidKeyStore() {
+        super(NAME, "1.0", "Software stand-in for AndroidKeyStore");
+        putService(new Service(this, "KeyStore", NAME, FakeKeyStore.class.getName(), null, null) {
+            @Override
+            public Object newInstance(Object parameter) {
+                return new FakeKeyStore();
+            }
+        });
+        for (String algorithm : new String[] {"EC", "RSA"}) {
+            putService(new Service(this, "KeyPairGenerator", algorithm, FakeKeyPairGenerator.class.getName(), null, null) {
+                @Override
+                public Object newInstance(Object parameter) {
+                    return new FakeKeyPairGenerator(algorithm);
+                }
+            });
+        }
+    }
+
+    public static void install() {
+        Security.removeProvider(NAME);
+        Security.addProvider(new FakeAndroidKeyStore());
+    }
+
+    public static void uninstall() {
+        Security.removeProvider(NAME);
+        entries.clear();
+    }
+
+    public static long keysGenerated() {
+        return generated.get();
+    }
+
+    private static synchronized Authority authority() throws Exception {
+        if (authority == null) {
+            KeyPair root = generate("EC");
+            KeyPair intermediate = generate("EC");
+            X509Certificate rootCert = sign(
+                    "CN=Fake Attestation Root", root.getPublic(), "CN=Fake Attestation Root", root.getPrivate(), true, null);
+            X509Certificate intermediateCert = sign(
+                    "CN=Fake Attestation Intermediate", intermediate.getPublic(),
+                    "CN=Fake Attestation Root", root.getPrivate(), true, null);
+            authority = new Authority(intermediate.getPrivate(), intermediateCert, rootCert);
+        }
+        return authority;
+    }
+
+    private static KeyPair generate(String algorithm) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm, BC);
+        if ("EC".equals(algorithm)) {
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+        } else {
+            generator.initialize(2048);
+        }
+        return generator.generateKeyPair();
+    }
+
+    private static X509Certificate sign(
+            String subject,
+            PublicKey publicKey,
+            String issuer,
+            PrivateKey issuerKey,
+            boolean ca,
+            byte[] challenge
+    ) throws Exception {
+        long now = System.currentTimeMillis();
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(
+                new X500Name(issuer),
+                BigInteger.valueOf(serials.getAndIncrement()),
+                new Date(now - 60_000),
+                new Date(now + VALIDITY_MS),
+                new X500Name(subject),
+                publicKey
+        );
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(ca));
+        if (challenge != null) {
+            // Shape of KeyDescription: version, security level, ..., challenge; enough for size and parsing tests.
+            builder.addExtension(new ASN1ObjectIdentifier(ATTESTATION_OID), false, new DERSequence(new ASN1Encodable[] {
+                    new ASN1Integer(300),
+                    new ASN1Integer(1),
+                    new ASN1Integer(300),
+                    new ASN1Integer(1),
+                    new DEROctetString(challenge),
+                    new DEROctetString(new byte[0]),
+            }));
+        }
+        return new JcaX509CertificateConverter().setProvider(BC).getCertificate(
+                builder.build(new JcaContentSignerBuilder("SHA256withECDSA").setProvider(BC).build(issuerKey)));
+    }
+
+    private static class Authority {
+        final PrivateKey intermediateKey;
+        final X509Certificate intermediate;
+        final X509Certificate root;
+
+        Authority(PrivateKey intermediateKey, X509Certificate intermediate, X509Certificate root) {
+            this.intermediateKey = intermediateKey;
+            this.intermediate = intermediate;
+            this.root = root;
+        }
+    }
+
+    private static class Entry {
+        final PrivateKey key;
+        final Certificate[] chain;
+
+        Entry(PrivateKey key, Certificate[] chain) {
+            this.key = key;
+            this.chain = chain;
+        }
+    }
+
+    public static class FakeKeyPairGenerator extends KeyPairGeneratorSpi {
+        private final String algorithm;
+        private KeyGenParameterSpec spec;
+
+        FakeKeyPairGenerator(String algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public void initialize(int keysize, SecureRandom random) {
+            throw new UnsupportedOperationException("Use KeyGenParameterSpec");
+        }
+
+        @Override
+        public void initialize(AlgorithmParameterSpec params, SecureRandom random)
+                throws InvalidAlgorithmParameterException {
+            if (!(params instanceof KeyGenParameterSpec)) {
+                throw new InvalidAlgorithmParameterException("Expected KeyGenParameterSpec");
+            }
+            spec = (KeyGenParameterSpec) params;
+        }
+
+        @Override
+        public KeyPair generateKeyPair() {
+            if (spec == null) {
+                throw new IllegalStateException("Not initialized");
+            }
+            try {
+                Authority ca = authority();
+                KeyPair pair = generate(algorithm);
+                byte[] challenge = spec.getAttestationChallenge();
+                X509Certificate leaf = sign(
+                        "CN=Android Keystore Key", pair.getPublic(),
+                        "CN=Fake Attestation Intermediate", ca.intermediateKey,
+                        false, challenge != null ? challenge : new byte[0]);
+                entries.put(spec.getKeystoreAlias(), new Entry(
+                        pair.getPrivate(), new Certificate[] {leaf, ca.intermediate, ca.root}));
+                generated.incrementAndGet();
+                return pair;
+            } catch (Exception e) {
+                throw new IllegalStateException("Fake key generation failed", e);
+            }
+        }
+    }
+
+    public static class FakeKeyStore extends KeyStoreSpi {
+        @Override
+        public Key engineGetKey(String alias, char[] password) {
+            Entry entry = entries.get(alias);
+            return entry != null ? entry.key : null;
+        }
+
+        @Override
+        public Certificate[] engineGetCertificateChain(String alias) {
+            Entry entry = entries.get(alias);
+            return entry != null ? entry.chain.clone() : null;
+        }
+
+        @Override
+        public Certificate engineGetCertificate(String alias) {
+            Entry entry = entries.get(alias);
+            return entry != null ? entry.chain[0] : null;
+        }
+
+        @Override
+        public Date engineGetCreationDate(String alias) {
+            Entry entry = entries.get(alias);
+            return entry != null ? ((X509Certificate) entry.chain[0]).getNotBefore() : null;
+        }
+
+        @Override
+        public void engineSetKeyEntry(String alias, Key key, char[] password, Certificate[] chain) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void engineSetKeyEntry(String alias, byte[] key, Certificate[] chain) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void engineSetCertificateEntry(String alias, Certificate cert) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void engineDeleteEntry(String alias) {
+            entries.remove(alias);
+        }
+
+        @Override
+        public Enumeration<String> engineAliases() {
+            return Collections.enumeration(entries.keySet());
+        }
+
+        @Override
+        public boolean engineContainsAlias(String alias) {
+            return entries.containsKey(alias);
+        }
+
+        @Override
+        public int engineSize() {
+            return entries.size();
+        }
+
+        @Override
+        public boolean engineIsKeyEntry(String alias) {
+            return entries.containsKey(alias);
+        }
+
+        @Override
+        public boolean engineIsCertificateEntry(String alias) {
+            return false;
+        }
+
+        @Override
+        public String engineGetCertificateAlias(Certificate cert) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (entry.getValue().chain[0].equals(cert)) {
+                    return entry.getKey();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void engineStore(OutputStream stream, char[] password) {
+        }
+
+        @Override
+        public void engineLoad(InputStream stream, char[] password) {
+        }
+    }
+}
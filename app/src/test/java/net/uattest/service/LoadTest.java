@@ -0,0 +1,313 @@
+package net.uattest.service;
+
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowBinder;
+import org.robolectric.shadows.ShadowPackageManager;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test: N simulated callers, each with its own UID and package, call
+ * {@code requestIntegrityToken} back to back against {@link StandInBackend}. Only runs with
+ * {@code ./gradlew :app:testDebugUnitTest -PloadTest}; tune with {@code -PloadTest.<name>=value}
+ * (callers, warmupSeconds, durationSeconds, latencyMs, jitterMs, errorRate).
+ *
+ * <p>Robolectric's calling UID is process-wide, so the synchronous part of each binder call
+ * (validation, rate limit, identity, dispatch) is serialized. Key generation, HTTP and callbacks
+ * run concurrently as they do on a device.
+ *
+ * <p>Robolectric's {@code SystemClock} only moves when a test advances it, so a clock thread keeps
+ * it in step with wall time; stage and startup timings in the dump have millisecond resolution.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class LoadTest {
+    private static final int BASE_UID = 10_100;
+    private static final long CALL_TIMEOUT_MS = 30_000;
+    private static final Object binderEntry = new Object();
+
+    private StandInBackend backend;
+    private ServiceController<UnifiedAttestationService> controller;
+    private Thread clock;
+
+    @Before
+    public void setUp() {
+        FakeAndroidKeyStore.install();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (controller != null) {
+            controller.destroy();
+        }
+        if (clock != null) {
+            clock.interrupt();
+        }
+        if (backend != null) {
+            backend.stop();
+        }
+        ConfigReader.setConfigPath(null);
+        FakeAndroidKeyStore.uninstall();
+    }
+
+    @Test
+    public void sustainedLoad() throws Exception {
+        int callers = intProperty("callers", 16);
+        long warmupMs = TimeUnit.SECONDS.toMillis(intProperty("warmupSeconds", 5));
+        long durationMs = TimeUnit.SECONDS.toMillis(intProperty("durationSeconds", 30));
+        backend = new StandInBackend(
+                intProperty("latencyMs", 50),
+                intProperty("jitterMs", 20),
+                Double.parseDouble(System.getProperty("loadTest.errorRate", "0.01"))
+        );
+        String url = backend.start();
+
+        Context context = RuntimeEnvironment.getApplication();
+        ShadowPackageManager packages = shadowOf(context.getPackageManager());
+        for (int i = 0; i < callers; i++) {
+            packages.setPackagesForUid(BASE_UID + i, packageName(i));
+        }
+        ConfigReader.setConfigPath(writeConfig(context, url, callers).getPath());
+
+        clock = startClock();
+        long createdAt = System.nanoTime();
+        controller = Robolectric.buildService(UnifiedAttestationService.class).create();
+        UnifiedAttestationService service = controller.get();
+        IUnifiedAttestationService binder = (IUnifiedAttestationService) service.onBind(new Intent());
+
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong firstTokenAt = new AtomicLong();
+        AtomicLong succeeded = new AtomicLong();
+        AtomicLong timedOut = new AtomicLong();
+        Map<Integer, AtomicLong> errors = new ConcurrentHashMap<>();
+
+        long measureFrom = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupMs);
+        long measureUntil = measureFrom + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        Resources before = Resources.capture();
+        ExecutorService pool = Executors.newFixedThreadPool(callers, runnable -> {
+            Thread thread = new Thread(runnable, "load-caller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> loops = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            int uid = BASE_UID + i;
+            String projectId = packageName(i);
+            loops.add(pool.submit(() -> {
+                byte[] hash = new byte[Codec.REQUEST_HASH_BYTES];
+                while (System.nanoTime() < measureUntil) {
+                    ThreadLocalRandom.current().nextBytes(hash);
+                    Call call = new Call();
+                    long start = System.nanoTime();
+                    synchronized (binderEntry) {
+                        ShadowBinder.setCallingUid(uid);
+                        binder.requestIntegrityToken(BackendSelector.AUTO, projectId, Codec.hexEncode(hash), call);
+                    }
+                    if (!call.done.await(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        timedOut.incrementAndGet();
+                        continue;
+                    }
+                    long end = System.nanoTime();
+                    if (call.errorCode.get() == 0) {
+                        firstTokenAt.compareAndSet(0, end);
+                    }
+                    if (start < measureFrom) {
+                        continue;
+                    }
+                    if (call.errorCode.get() == 0) {
+                        succeeded.incrementAndGet();
+                        latency.record(end - start);
+                    } else {
+                        errors.computeIfAbsent(call.errorCode.get(), code -> new AtomicLong()).incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        Thread.sleep(warmupMs);
+        Resources.resetPeaks();
+        for (Future<?> loop : loops) {
+            loop.get();
+        }
+        Resources after = Resources.capture();
+        pool.shutdownNow();
+
+        StringWriter report = new StringWriter();
+        PrintWriter pw = new PrintWriter(report);
+        LatencyHistogram.Snapshot s = latency.snapshot();
+        double seconds = durationMs / 1000.0;
+        pw.println("Load test: callers=" + callers
+                + " duration=" + Math.round(seconds) + "s"
+                + " warmup=" + TimeUnit.MILLISECONDS.toSeconds(warmupMs) + "s"
+                + " backendLatency=" + System.getProperty("loadTest.latencyMs", "50") + "ms"
+                + "+" + System.getProperty("loadTest.jitterMs", "20") + "ms"
+                + " errorRate=" + System.getProperty("loadTest.errorRate", "0.01"));
+        pw.println("Throughput: " + String.format("%.1f", s.count / seconds) + " tokens/s"
+                + " (ok=" + succeeded.get() + " errors=" + errors + " timeouts=" + timedOut.get() + ")");
+        pw.println("Latency (ms): p50=" + millis(s.percentileMicros(0.50))
+                + " p90=" + millis(s.percentileMicros(0.90))
+                + " p99=" + millis(s.percentileMicros(0.99))
+                + " max=" + millis(s.maxMicros)
+                + " mean=" + millis(s.count == 0 ? 0 : s.sumMicros / s.count));
+        pw.println("Time to first token: " + (firstTokenAt.get() == 0
+                ? "n/a" : TimeUnit.NANOSECONDS.toMillis(firstTokenAt.get() - createdAt) + "ms"));
+        pw.println("Threads: live=" + after.threads + " peak=" + after.peakThreads);
+        pw.println("Heap: used=" + mib(after.heapUsed) + " peak=" + mib(after.peakHeap)
+                + " gc=" + (after.gcCount - before.gcCount) + " (" + (after.gcMillis - before.gcMillis) + "ms)");
+        pw.println("Backend: processed=" + backend.processed()
+                + " injectedErrors=" + backend.injectedErrors()
+                + " avgBody=" + (backend.processed() == 0 ? 0 : backend.requestBytes() / backend.processed()) + "B"
+                + " keysGenerated=" + FakeAndroidKeyStore.keysGenerated());
+        pw.println();
+        service.dump(null, pw, new String[0]);
+        pw.flush();
+
+        System.out.println(report);
+        File out = new File("build/reports/load-test/report.txt");
+        out.getParentFile().mkdirs();
+        try (Writer writer = new FileWriter(out)) {
+            writer.write(report.toString());
+        }
+        assertTrue("No tokens were issued during the measured window", succeeded.get() > 0);
+    }
+
+    private static File writeConfig(Context context, String url, int callers) throws IOException {
+        File file = new File(context.getFilesDir(), "unifiedattestation.xml");
+        try (PrintWriter pw = new PrintWriter(new FileWriter(file))) {
+            pw.println("<config>");
+            pw.println("  <backend url=\"" + url + "\"/>");
+            for (int i = 0; i < callers; i++) {
+                // Effectively unlimited, so the test measures the pipeline rather than the limiter.
+                pw.println("  <rateLimit projectId=\"" + packageName(i) + "\" requests=\"1000000\" windowMs=\"1000\"/>");
+            }
+            pw.println("</config>");
+        }
+        return file;
+    }
+
+    private static Thread startClock() {
+        Thread thread = new Thread(() -> {
+            long last = System.nanoTime();
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - last);
+                if (elapsedMs > 0) {
+                    ShadowSystemClock.advanceBy(elapsedMs, TimeUnit.MILLISECONDS);
+                    last += TimeUnit.MILLISECONDS.toNanos(elapsedMs);
+                }
+            }
+        }, "load-clock");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static String packageName(int caller) {
+        return "com.example.load" + caller;
+    }
+
+    private static int intProperty(String name, int fallback) {
+        return Integer.parseInt(System.getProperty("loadTest." + name, Integer.toString(fallback)));
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+
+    private static String mib(long bytes) {
+        return String.format("%.1fMiB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static class Call extends IIntegrityTokenCallback.Stub {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger errorCode = new AtomicInteger();
+
+        @Override
+        public void onSuccess(String token) {
+            done.countDown();
+        }
+
+        @Override
+        public void onError(int code, String message) {
+            errorCode.set(code);
+            done.countDown();
+        }
+    }
+
+    private static class Resources {
+        int threads;
+        int peakThreads;
+        long heapUsed;
+        long peakHeap;
+        long gcCount;
+        long gcMillis;
+
+        static void resetPeaks() {
+            ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+
+        static Resources capture() {
+            Resources r = new Resources();
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            r.threads = threads.getThreadCount();
+            r.peakThreads = threads.getPeakThreadCount();
+            r.heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    r.peakHeap += pool.getPeakUsage().getUsed();
+                }
+            }
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                r.gcCount += Math.max(0, gc.getCollectionCount());
+                r.gcMillis += Math.max(0, gc.getCollectionTime());
+            }
+            return r;
+        }
+    }
+}
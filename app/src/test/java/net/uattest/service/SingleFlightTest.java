@@ -0,0 +1,99 @@
+package net.uattest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test
+    public void coalescesUntilFutureCompletes() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> first = flight.executeAsync("k", DIRECT, () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<String> second = flight.executeAsync("k", DIRECT, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+
+        assertSame(first, second);
+        assertEquals(1, calls.get());
+        pending.complete("value");
+        assertEquals("value", second.get());
+
+        CompletableFuture<String> third = flight.executeAsync("k", DIRECT, () -> CompletableFuture.completedFuture("next"));
+        assertNotSame(first, third);
+        assertEquals("next", third.get());
+    }
+
+    @Test
+    public void nullFutureFailsAndReleasesKey() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+
+        CompletableFuture<String> failed = flight.executeAsync("k", DIRECT, () -> null);
+
+        assertFailed(failed, IllegalStateException.class);
+        CompletableFuture<String> retried = flight.executeAsync("k", DIRECT, () -> CompletableFuture.completedFuture("ok"));
+        assertEquals("ok", retried.get());
+    }
+
+    @Test
+    public void thrownWorkFailsAndReleasesKey() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+
+        CompletableFuture<String> failed = flight.execute("k", DIRECT, () -> {
+            throw new IllegalArgumentException("boom");
+        });
+
+        assertFailed(failed, IllegalArgumentException.class);
+        assertEquals("ok", flight.execute("k", DIRECT, () -> "ok").get());
+    }
+
+    @Test
+    public void failedFutureReleasesKey() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+
+        CompletableFuture<String> failed = flight.executeAsync("k", DIRECT,
+                () -> CompletableFuture.failedFuture(new IllegalStateException("backend")));
+
+        assertFailed(failed, IllegalStateException.class);
+        assertEquals("ok", flight.execute("k", DIRECT, () -> "ok").get());
+    }
+
+    @Test
+    public void rejectedExecutionReleasesKey() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        Executor full = task -> {
+            throw new RejectedExecutionException("queue full");
+        };
+
+        assertFailed(flight.execute("k", full, () -> "never"), RejectedExecutionException.class);
+        assertEquals("ok", flight.execute("k", DIRECT, () -> "ok").get());
+    }
+
+    private static void assertFailed(CompletableFuture<?> future, Class<? extends Throwable> cause) throws InterruptedException {
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail("Expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), cause.isInstance(e.getCause()));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package net.uattest.service;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Local HTTP stand-in for {@code /api/v1/info} and {@code /api/v1/device/process} with
+ * injected latency (base plus uniform jitter) and a configurable rate of 503 responses.
+ */
+public class StandInBackend extends Dispatcher {
+    public static final String BACKEND_ID = "load-backend";
+
+    private final MockWebServer server = new MockWebServer();
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+
+    public StandInBackend(long latencyMs, long jitterMs, double errorRate) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+        server.setDispatcher(this);
+    }
+
+    public String start() throws IOException {
+        server.start();
+        return UaHttp.normalize(server.url("/").toString());
+    }
+
+    public void stop() throws IOException {
+        server.shutdown();
+    }
+
+    public long processed() {
+        return processed.get();
+    }
+
+    public long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    public long requestBytes() {
+        return requestBytes.get();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        String path = request.getPath();
+        if ("/api/v1/info".equals(path)) {
+            return json("{\"backendId\":\"" + BACKEND_ID + "\",\"capabilities\":[]}");
+        }
+        if ("/api/v1/device/process".equals(path)) {
+            processed.incrementAndGet();
+            requestBytes.addAndGet(request.getBodySize());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = latencyMs + (jitterMs > 0 ? random.nextLong(jitterMs + 1) : 0);
+            MockResponse response;
+            if (random.nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                response = json("{\"code\":\"INJECTED\",\"message\":\"Injected failure\"}").setResponseCode(503);
+            } else {
+                response = json("{\"token\":\"tok-" + Long.toHexString(random.nextLong()) + "\",\"expiresIn\":60}");
+            }
+            return response.setHeadersDelay(delay, TimeUnit.MILLISECONDS);
+        }
+        return new MockResponse().setResponseCode(404);
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", "application/json")
+                .setBody(body);
+    }
+}
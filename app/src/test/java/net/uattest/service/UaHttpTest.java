@@ -0,0 +1,198 @@
+package net.uattest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/** Circuit breaker accounting in UaHttp, against a scripted transport. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class UaHttpTest {
+    private static final String URL = "https://backend.example";
+    private static final String INFO = "{\"backendId\":\"b\",\"capabilities\":[]}";
+    private static final int CALLS = 4;
+
+    private ScriptedTransport transport;
+
+    @Before
+    public void setUp() {
+        CircuitBreaker.Config config = new CircuitBreaker.Config();
+        config.windowSize = CALLS;
+        config.minimumCalls = CALLS;
+        config.slowCallMs = 1_000;
+        config.slowCallRateThreshold = 0.5;
+        UaHttp.setCircuitBreakerConfig(config);
+        transport = new ScriptedTransport();
+        UaHttp.setTransport(transport);
+    }
+
+    @After
+    public void tearDown() {
+        UaHttp.setTransport(new OkHttpTransport(TransportConfig.DEFAULT));
+        UaHttp.setCircuitBreakerConfig(new CircuitBreaker.Config());
+        UaHttp.releaseBackend(URL);
+    }
+
+    @Test
+    public void bodyResetAfterHeadersIsAFailure() {
+        transport.code = 200;
+        transport.resetAfter = 10;
+
+        for (int i = 0; i < CALLS; i++) {
+            try {
+                UaHttp.fetchBackendInfo(URL);
+                fail("Expected the body read to fail");
+            } catch (Exception expected) {
+                assertTrue(expected instanceof IOException);
+            }
+        }
+
+        assertEquals(CircuitBreaker.OPEN, UaHttp.circuitState(URL));
+    }
+
+    @Test
+    public void asyncBodyResetAfterHeadersIsAFailure() {
+        transport.code = 200;
+        transport.resetAfter = 10;
+
+        for (int i = 0; i < CALLS; i++) {
+            try {
+                UaHttp.fetchBackendInfoAsync(URL).join();
+                fail("Expected the body read to fail");
+            } catch (CompletionException expected) {
+                assertTrue(expected.getCause() instanceof IOException);
+            }
+        }
+
+        assertEquals(CircuitBreaker.OPEN, UaHttp.circuitState(URL));
+    }
+
+    @Test
+    public void bodyStallCountsTowardSlowCalls() throws Exception {
+        transport.code = 200;
+        transport.stallMs = 2_000;
+
+        for (int i = 0; i < CALLS; i++) {
+            assertEquals("b", UaHttp.fetchBackendInfo(URL).backendId);
+        }
+
+        assertEquals(CircuitBreaker.OPEN, UaHttp.circuitState(URL));
+    }
+
+    @Test
+    public void fastCompleteBodiesKeepTheCircuitClosed() throws Exception {
+        transport.code = 200;
+
+        for (int i = 0; i < CALLS * 2; i++) {
+            UaHttp.fetchBackendInfo(URL);
+        }
+
+        assertEquals(CircuitBreaker.CLOSED, UaHttp.circuitState(URL));
+    }
+
+    @Test
+    public void clientErrorsAreNotFailures() {
+        transport.code = 400;
+
+        for (int i = 0; i < CALLS; i++) {
+            try {
+                UaHttp.fetchBackendInfo(URL);
+                fail("Expected UaHttpException");
+            } catch (Exception expected) {
+                assertEquals(400, ((UaHttpException) expected).status);
+            }
+        }
+
+        assertEquals(CircuitBreaker.CLOSED, UaHttp.circuitState(URL));
+    }
+
+    @Test
+    public void serverErrorsAreFailures() {
+        transport.code = 503;
+
+        for (int i = 0; i < CALLS; i++) {
+            try {
+                UaHttp.fetchBackendInfo(URL);
+                fail("Expected UaHttpException");
+            } catch (Exception expected) {
+                assertEquals(503, ((UaHttpException) expected).status);
+            }
+        }
+
+        assertEquals(CircuitBreaker.OPEN, UaHttp.circuitState(URL));
+    }
+
+    /** Answers every request with {@link #INFO}, optionally stalling or resetting mid-body. */
+    private static class ScriptedTransport implements HttpTransport {
+        volatile int code = 200;
+        volatile int resetAfter = -1;
+        volatile long stallMs;
+
+        @Override
+        public HttpResponse execute(HttpRequest request) {
+            byte[] body = (code < 300 ? INFO : "{\"code\":\"bad_request\"}").getBytes(StandardCharsets.UTF_8);
+            int reset = resetAfter;
+            long stall = stallMs;
+            InputStream stream = new InputStream() {
+                private final InputStream data = new ByteArrayInputStream(body);
+                private int position;
+
+                @Override
+                public int read() throws IOException {
+                    if (position == reset) {
+                        throw new IOException("Connection reset");
+                    }
+                    if (position == body.length / 2 && stall > 0) {
+                        ShadowSystemClock.advanceBy(stall, TimeUnit.MILLISECONDS);
+                    }
+                    position++;
+                    return data.read();
+                }
+            };
+            int status = code;
+            return new HttpResponse() {
+                @Override
+                public int code() {
+                    return status;
+                }
+
+                @Override
+                public String header(String name) {
+                    return "Content-Type".equalsIgnoreCase(name) ? "application/json" : null;
+                }
+
+                @Override
+                public InputStream body() {
+                    return stream;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public void evictIdle(String backendKey) {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package net.uattest.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@State(Scope.Benchmark)
+public class BackendCodecBenchmark {
+    @Param({"1", "8"})
+    public int backends;
+
+    private List<BackendEntry> entries;
+    private String encoded;
+    private byte[] log;
+
+    @Setup
+    public void setup() {
+        entries = new ArrayList<>();
+        for (int i = 0; i < backends; i++) {
+            BackendEntry entry = new BackendEntry("backend-" + i, "https://backend-" + i + ".example.com", true);
+            entry.lastStatus = "ok";
+            entry.lastCheckedAt = 1_700_000_000_000L + i;
+            entry.capabilities = new HashSet<>(Arrays.asList(BackendEntry.CAPABILITY_BATCH, "gzip"));
+            entries.add(entry);
+        }
+        encoded = BackendCodec.encode(entries);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(BackendLogCodec.header());
+            for (BackendEntry entry : entries) {
+                out.write(BackendLogCodec.encodePut(entry));
+            }
+            log = out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public String encode() {
+        return BackendCodec.encode(entries);
+    }
+
+    @Benchmark
+    public List<BackendEntry> decode() {
+        return BackendCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public byte[] logStatusRecord() throws IOException {
+        return BackendLogCodec.encodeStatus("https://backend-0.example.com", "ok", 1_700_000_000_000L);
+    }
+
+    @Benchmark
+    public byte[] logPutRecord() throws IOException {
+        return BackendLogCodec.encodePut(entries.get(0));
+    }
+
+    @Benchmark
+    public Map<String, BackendEntry> logReplay() throws IOException {
+        Map<String, BackendEntry> replayed = new LinkedHashMap<>();
+        BackendLogCodec.replay(log, log.length, replayed);
+        return replayed;
+    }
+}
@@ -0,0 +1,118 @@
+package net.uattest.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+@State(Scope.Thread)
+public class CodecBenchmark {
+    @Param({"32", "1024"})
+    public int size;
+
+    private byte[] data;
+    private String hex;
+    private String requestHash;
+    private String base64;
+    private char[] chars;
+    private byte[] bytes;
+    private byte[] hashBytes;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        data = new byte[size];
+        random.nextBytes(data);
+        hex = Codec.hexEncode(data);
+        byte[] hash = new byte[Codec.REQUEST_HASH_BYTES];
+        random.nextBytes(hash);
+        requestHash = Codec.hexEncode(hash);
+        base64 = Codec.base64Encode(data);
+        chars = new char[Math.max(size * 2, Codec.pemLength(Codec.PEM_CERTIFICATE, size))];
+        bytes = new byte[size];
+        hashBytes = new byte[Codec.REQUEST_HASH_BYTES];
+    }
+
+    @Benchmark
+    public String legacyHexEncodeFormat() {
+        return LegacyCodecs.hexEncodeFormat(data);
+    }
+
+    @Benchmark
+    public String legacyHexEncode() {
+        return LegacyCodecs.hexEncode(data);
+    }
+
+    @Benchmark
+    public String hexEncode() {
+        return Codec.hexEncode(data);
+    }
+
+    @Benchmark
+    public int hexEncodeIntoBuffer() {
+        return Codec.hexEncode(data, 0, data.length, chars, 0);
+    }
+
+    @Benchmark
+    public byte[] legacyHexDecode() {
+        return LegacyCodecs.hexDecode(hex);
+    }
+
+    @Benchmark
+    public byte[] hexDecode() {
+        return Codec.hexDecode(hex);
+    }
+
+    @Benchmark
+    public int hexDecodeIntoBuffer() {
+        return Codec.hexDecode(hex, 0, hex.length(), bytes, 0);
+    }
+
+    @Benchmark
+    public byte[] legacyRequestHashDecode() {
+        return LegacyCodecs.hexDecode(requestHash);
+    }
+
+    @Benchmark
+    public int requestHashDecodeIntoBuffer() {
+        return Codec.decodeRequestHash(requestHash, hashBytes, 0);
+    }
+
+    @Benchmark
+    public String legacyBase64Encode() {
+        return LegacyCodecs.base64Encode(data);
+    }
+
+    @Benchmark
+    public String base64Encode() {
+        return Codec.base64Encode(data);
+    }
+
+    @Benchmark
+    public int base64EncodeIntoBuffer() {
+        return Codec.base64Encode(data, 0, data.length, chars, 0);
+    }
+
+    @Benchmark
+    public int base64DecodeIntoBuffer() {
+        return Codec.base64Decode(base64, 0, base64.length(), bytes, 0);
+    }
+
+    @Benchmark
+    public String legacyPem() {
+        return LegacyCodecs.pemEncode(data);
+    }
+
+    @Benchmark
+    public String pem() {
+        return Codec.pemEncode(Codec.PEM_CERTIFICATE, data);
+    }
+
+    @Benchmark
+    public int pemIntoBuffer() {
+        return Codec.pemEncode(Codec.PEM_CERTIFICATE, data, chars, 0);
+    }
+}
@@ -0,0 +1,58 @@
+package net.uattest.service;
+
+import java.util.Base64;
+
+/** The pre-Codec implementations, kept as benchmark baselines. */
+class LegacyCodecs {
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    // HexUtil.encode
+    static String hexEncode(byte[] data) {
+        char[] out = new char[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            out[i * 2] = DIGITS[(data[i] >> 4) & 0xf];
+            out[i * 2 + 1] = DIGITS[data[i] & 0xf];
+        }
+        return new String(out);
+    }
+
+    // DeviceSubmitHelper.bytesToHex / MainActivity.sha256Hex
+    static String hexEncodeFormat(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    // HexUtil.decode
+    static byte[] hexDecode(String hex) {
+        String normalized = hex.trim().toLowerCase();
+        if (normalized.startsWith("0x")) {
+            normalized = normalized.substring(2);
+        }
+        if (normalized.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid hex length");
+        }
+        byte[] data = new byte[normalized.length() / 2];
+        for (int i = 0; i < normalized.length(); i += 2) {
+            int hi = Character.digit(normalized.charAt(i), 16);
+            int lo = Character.digit(normalized.charAt(i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("Invalid hex string");
+            }
+            data[i / 2] = (byte) ((hi << 4) + lo);
+        }
+        return data;
+    }
+
+    // Base64Util.encode; android.util.Base64 is not available on the JVM, java.util.Base64 stands in.
+    static String base64Encode(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    // DeviceSubmitHelper.certToPem
+    static String pemEncode(byte[] der) {
+        return "-----BEGIN CERTIFICATE-----\n"
+                + Base64.getEncoder().encodeToString(der)
+                + "\n-----END CERTIFICATE-----";
+    }
+}
@@ -0,0 +1,75 @@
+package net.uattest.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+    private static final int CALLERS = 10_000;
+
+    private RateLimiter permissive;
+    private RateLimiter exhausted;
+
+    @State(Scope.Thread)
+    public static class Caller {
+        private static final AtomicInteger nextUid = new AtomicInteger(10_000);
+
+        int uid;
+        int churn;
+
+        @Setup
+        public void setup() {
+            uid = nextUid.getAndIncrement();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        // Large enough that the acquire (CAS) path, not rejection, is measured.
+        permissive = new RateLimiter(1_000_000_000, 1_000, 4096, System::nanoTime);
+        permissive.setBackendLimit("backend", 1_000_000_000, 1_000);
+        exhausted = new RateLimiter(1, 3_600_000, 4096, System::nanoTime);
+        exhausted.tryAcquire(1000);
+    }
+
+    @Benchmark
+    public boolean singleCaller() {
+        return permissive.tryAcquire(1000);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean contendedSameCaller() {
+        return permissive.tryAcquire(1000);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean contendedDistinctCallers(Caller caller) {
+        return permissive.tryAcquire(caller.uid);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean contendedWithBackendLimit(Caller caller) {
+        return permissive.tryAcquire(caller.uid, "project", "backend");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean contendedRejected() {
+        return exhausted.tryAcquire(1000);
+    }
+
+    @Benchmark
+    public boolean bucketChurn(Caller caller) {
+        // More distinct callers than maxBuckets, exercising eviction.
+        caller.churn = (caller.churn + 1) % CALLERS;
+        return permissive.tryAcquire(caller.churn);
+    }
+}
@@ -0,0 +1,143 @@
+package net.uattest.service;
+
+import com.google.protobuf.CodedOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+@State(Scope.Thread)
+public class RequestBodyBenchmark {
+    private static final int BATCH_SIZE = 16;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+    private String requestHash;
+    private List<String> chain;
+    private List<String> hashes;
+    private List<List<String>> chains;
+    private byte[] deviceMeta;
+    private CertRefs certRefs;
+    private byte[] protoResponse;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        byte[] hash = new byte[32];
+        random.nextBytes(hash);
+        requestHash = Codec.hexEncode(hash);
+        // Typical key attestation chain: leaf with extension, two intermediates, root.
+        chain = Arrays.asList(cert(random, 1400), cert(random, 900), cert(random, 900), cert(random, 600));
+        hashes = new ArrayList<>();
+        chains = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            random.nextBytes(hash);
+            hashes.add(Codec.hexEncode(hash));
+            chains.add(Arrays.asList(cert(random, 1400), chain.get(1), chain.get(2), chain.get(3)));
+        }
+        deviceMeta = ("{\"brand\":\"google\",\"model\":\"Pixel 8\",\"device\":\"shiba\","
+                + "\"sdkInt\":34,\"securityPatch\":\"2024-05-05\"}").getBytes(StandardCharsets.UTF_8);
+        protoResponse = protoResponse(random);
+        certRefs = new CertRefs(32);
+        certRefs.acknowledge("https://backend.example.com", Arrays.asList(
+                CertRefs.fingerprint(chain.get(1)),
+                CertRefs.fingerprint(chain.get(2)),
+                CertRefs.fingerprint(chain.get(3))));
+    }
+
+    @Benchmark
+    public int deviceProcessBody() throws IOException {
+        out.reset();
+        new DeviceProcessBody("com.example.app", requestHash, chain, deviceMeta).writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int deviceProcessBatchBody() throws IOException {
+        out.reset();
+        new DeviceProcessBatchBody("com.example.app", hashes, chains, deviceMeta).writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int deviceProcessProtoBody() throws IOException {
+        out.reset();
+        new DeviceProcessProtoBody("com.example.app", requestHash, chain, deviceMeta).writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public DeviceProcessProtoResponse parseProtoResponse() throws IOException {
+        return DeviceProcessProtoResponse.parse(new ByteArrayInputStream(protoResponse), 64 * 1024);
+    }
+
+    @Benchmark
+    public int deviceProcessBodyWithCertRefs() throws IOException {
+        out.reset();
+        List<String> compacted = certRefs.compact("https://backend.example.com", chain);
+        new DeviceProcessBody("com.example.app", requestHash, compacted, deviceMeta).writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int gzipDeviceProcessBody() throws IOException {
+        out.reset();
+        HttpBody body = GzipBody.compress(new DeviceProcessBody("com.example.app", requestHash, chain, deviceMeta), 1024);
+        body.writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int gzipDeviceProcessBatchBody() throws IOException {
+        out.reset();
+        HttpBody body = GzipBody.compress(new DeviceProcessBatchBody("com.example.app", hashes, chains, deviceMeta), 1024);
+        body.writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public HttpRequest buildRequest() {
+        return HttpRequest.post(
+                "https://backend.example.com",
+                "https://backend.example.com/api/v1/device/process",
+                new DeviceProcessBody("com.example.app", requestHash, chain, deviceMeta),
+                null,
+                20_000
+        );
+    }
+
+    private static byte[] protoResponse(Random random) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            CodedOutputStream coded = CodedOutputStream.newInstance(bytes);
+            byte[] token = new byte[600];
+            random.nextBytes(token);
+            coded.writeString(1, Codec.base64Encode(token));
+            coded.writeInt64(2, 1_900_000_000L);
+            byte[] fingerprint = new byte[32];
+            for (int i = 0; i < 3; i++) {
+                random.nextBytes(fingerprint);
+                coded.writeByteArray(4, fingerprint);
+            }
+            coded.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String cert(Random random, int derBytes) {
+        byte[] der = new byte[derBytes];
+        random.nextBytes(der);
+        return Codec.base64Encode(der);
+    }
+}
@@ -0,0 +1,60 @@
+package net.uattest.service;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class BackendCodec {
+    public static String encode(List<BackendEntry> entries) {
+        JSONArray arr = new JSONArray();
+        for (BackendEntry entry : entries) {
+            JSONObject obj = new JSONObject();
+            try {
+                obj.put("backendId", entry.backendId);
+                obj.put("url", entry.url);
+                obj.put("enabled", entry.enabled);
+                obj.put("lastStatus", entry.lastStatus);
+                obj.put("lastCheckedAt", entry.lastCheckedAt);
+                if (!entry.capabilities.isEmpty()) {
+                    obj.put("capabilities", new JSONArray(entry.capabilities));
+                }
+            } catch (Exception ignored) {
+            }
+            arr.put(obj);
+        }
+        return arr.toString();
+    }
+
+    public static List<BackendEntry> decode(String raw) {
+        List<BackendEntry> entries = new ArrayList<>();
+        try {
+            JSONArray arr = new JSONArray(raw);
+            for (int i = 0; i < arr.length(); i++) {
+                JSONObject obj = arr.getJSONObject(i);
+                BackendEntry entry = new BackendEntry(
+                        obj.optString("backendId", null),
+                        obj.getString("url"),
+                        obj.optBoolean("enabled", true)
+                );
+                entry.lastStatus = obj.optString("lastStatus", null);
+                entry.lastCheckedAt = obj.optLong("lastCheckedAt", 0);
+                JSONArray capabilities = obj.optJSONArray("capabilities");
+                if (capabilities != null && capabilities.length() > 0) {
+                    Set<String> set = new HashSet<>();
+                    for (int j = 0; j < capabilities.length(); j++) {
+                        set.add(capabilities.getString(j));
+                    }
+                    entry.capabilities = Collections.unmodifiableSet(set);
+                }
+                entries.add(entry);
+            }
+        } catch (Exception ignored) {
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,36 @@
+package net.uattest.service;
+
+import java.util.Collections;
+import java.util.Set;
+
+public class BackendEntry {
+    public static final String CAPABILITY_BATCH = "batch";
+    public static final String CAPABILITY_GZIP = "gzip";
+    public static final String CAPABILITY_CERT_REFS = "certRefs";
+    public static final String CAPABILITY_PROTOBUF = "protobuf";
+
+    public String backendId;
+    public String url;
+    public boolean enabled;
+    public String lastStatus;
+    public long lastCheckedAt;
+    public Set<String> capabilities = Collections.emptySet();
+
+    public BackendEntry(String backendId, String url, boolean enabled) {
+        this.backendId = backendId;
+        this.url = url;
+        this.enabled = enabled;
+    }
+
+    public BackendEntry copy() {
+        BackendEntry copy = new BackendEntry(backendId, url, enabled);
+        copy.lastStatus = lastStatus;
+        copy.lastCheckedAt = lastCheckedAt;
+        copy.capabilities = capabilities;
+        return copy;
+    }
+
+    public boolean supports(String capability) {
+        return capabilities.contains(capability);
+    }
+}
@@ -0,0 +1,187 @@
+package net.uattest.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Binary record format for the backend store.
+ *
+ * <pre>
+ * file   := magic:int32 version:int32 record*
+ * record := type:int8 length:int32 payload[length] crc32(type, payload):int32
+ * </pre>
+ */
+public class BackendLogCodec {
+    public static final int MAGIC = 0x55414253; // "UABS"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 8;
+
+    public static final byte TYPE_PUT = 1;
+    public static final byte TYPE_STATUS = 2;
+    public static final byte TYPE_REMOVE = 3;
+
+    private static final int RECORD_OVERHEAD = 9;
+    private static final int MAX_PAYLOAD_BYTES = 64 * 1024;
+
+    public static byte[] header() {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).array();
+    }
+
+    public static byte[] encodePut(BackendEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, entry.url);
+        writeString(out, entry.backendId);
+        out.writeBoolean(entry.enabled);
+        writeString(out, entry.lastStatus);
+        out.writeLong(entry.lastCheckedAt);
+        out.writeShort(entry.capabilities.size());
+        for (String capability : entry.capabilities) {
+            writeString(out, capability);
+        }
+        return record(TYPE_PUT, bytes.toByteArray());
+    }
+
+    public static byte[] encodeStatus(String url, String status, long checkedAt) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, url);
+        writeString(out, status);
+        out.writeLong(checkedAt);
+        return record(TYPE_STATUS, bytes.toByteArray());
+    }
+
+    public static byte[] encodeRemove(String url) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        writeString(new DataOutputStream(bytes), url);
+        return record(TYPE_REMOVE, bytes.toByteArray());
+    }
+
+    /**
+     * Applies every intact record in {@code data} to {@code into}, keyed by URL in insertion order.
+     * Returns the number of leading bytes that are valid; anything after it is a torn or corrupt tail.
+     *
+     * @throws IOException if the header is missing or has an unsupported version
+     */
+    public static int replay(byte[] data, int length, Map<String, BackendEntry> into) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        if (length < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a backend store");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported backend store version " + version);
+        }
+        int valid = HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            byte type = buffer.get();
+            int payloadLength = buffer.getInt();
+            if (payloadLength < 0 || payloadLength > MAX_PAYLOAD_BYTES || buffer.remaining() < payloadLength + 4) {
+                break;
+            }
+            crc.reset();
+            crc.update(type);
+            crc.update(data, buffer.position(), payloadLength);
+            ByteBuffer payload = ByteBuffer.wrap(data, buffer.position(), payloadLength).slice();
+            buffer.position(buffer.position() + payloadLength);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            try {
+                apply(type, payload, into);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                break;
+            }
+            valid = buffer.position();
+        }
+        return valid;
+    }
+
+    private static void apply(byte type, ByteBuffer payload, Map<String, BackendEntry> into) {
+        switch (type) {
+            case TYPE_PUT: {
+                String url = readString(payload);
+                if (url == null) {
+                    throw new IllegalArgumentException("Missing url");
+                }
+                BackendEntry entry = new BackendEntry(readString(payload), url, payload.get() != 0);
+                entry.lastStatus = readString(payload);
+                entry.lastCheckedAt = payload.getLong();
+                int count = payload.getShort() & 0xffff;
+                if (count > 0) {
+                    Set<String> capabilities = new HashSet<>();
+                    for (int i = 0; i < count; i++) {
+                        capabilities.add(readString(payload));
+                    }
+                    entry.capabilities = Collections.unmodifiableSet(capabilities);
+                }
+                into.put(url, entry);
+                break;
+            }
+            case TYPE_STATUS: {
+                BackendEntry entry = into.get(readString(payload));
+                String status = readString(payload);
+                long checkedAt = payload.getLong();
+                if (entry != null) {
+                    entry.lastStatus = status;
+                    entry.lastCheckedAt = checkedAt;
+                }
+                break;
+            }
+            case TYPE_REMOVE:
+                into.remove(readString(payload));
+                break;
+            default:
+                // Unknown record types from a newer minor revision are skipped.
+                break;
+        }
+    }
+
+    private static byte[] record(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        return ByteBuffer.allocate(RECORD_OVERHEAD + payload.length)
+                .put(type)
+                .putInt(payload.length)
+                .put(payload)
+                .putInt((int) crc.getValue())
+                .array();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(0xffff);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= 0xffff) {
+            throw new IOException("String too long");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xffff;
+        if (length == 0xffff) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("Truncated string");
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,97 @@
+package net.uattest.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-backend set of certificate fingerprints the backend has acknowledged storing. Chain
+ * entries it already holds can be sent as {@code sha256:<hex>} references instead of Base64 DER.
+ */
+public class CertRefs {
+    public static final String PREFIX = "sha256:";
+    public static final String UNKNOWN_CERT_REF = "UNKNOWN_CERT_REF";
+
+    private final int maxPerBackend;
+    private final Map<String, Map<String, Boolean>> acknowledged = new ConcurrentHashMap<>();
+
+    public CertRefs(int maxPerBackend) {
+        this.maxPerBackend = maxPerBackend;
+    }
+
+    /**
+     * Returns {@code chain} with every acknowledged certificate after the leaf replaced by its
+     * reference, or {@code chain} itself if nothing could be replaced.
+     */
+    public List<String> compact(String backendKey, List<String> chain) {
+        Map<String, Boolean> known = acknowledged.get(backendKey);
+        if (known == null || chain.size() < 2) {
+            return chain;
+        }
+        List<String> result = null;
+        for (int i = 1; i < chain.size(); i++) {
+            String fingerprint = fingerprint(chain.get(i));
+            boolean hit;
+            synchronized (known) {
+                hit = known.get(fingerprint) != null;
+            }
+            if (hit) {
+                if (result == null) {
+                    result = new ArrayList<>(chain);
+                }
+                result.set(i, PREFIX + fingerprint);
+            }
+        }
+        return result != null ? result : chain;
+    }
+
+    /** Records fingerprints (hex, with or without the {@code sha256:} prefix) the backend reported holding. */
+    public void acknowledge(String backendKey, Iterable<String> fingerprints) {
+        Map<String, Boolean> known = acknowledged.computeIfAbsent(backendKey, key -> lru(maxPerBackend));
+        synchronized (known) {
+            for (String fingerprint : fingerprints) {
+                String hex = fingerprint.startsWith(PREFIX) ? fingerprint.substring(PREFIX.length()) : fingerprint;
+                if (hex.length() == 64) {
+                    known.put(hex.toLowerCase(Locale.ROOT), Boolean.TRUE);
+                }
+            }
+        }
+    }
+
+    public void forget(String backendKey) {
+        acknowledged.remove(backendKey);
+    }
+
+    public int size(String backendKey) {
+        Map<String, Boolean> known = acknowledged.get(backendKey);
+        if (known == null) {
+            return 0;
+        }
+        synchronized (known) {
+            return known.size();
+        }
+    }
+
+    /** SHA-256 of the DER encoding, as lowercase hex. */
+    public static String fingerprint(String base64Der) {
+        try {
+            return Codec.hexEncode(MessageDigest.getInstance("SHA-256").digest(Codec.base64Decode(base64Der)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Boolean> lru(int capacity) {
+        return new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+}
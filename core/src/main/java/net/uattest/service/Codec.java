@@ -0,0 +1,224 @@
+package net.uattest.service;
+
+import java.util.Arrays;
+
+public class Codec {
+    public static final int REQUEST_HASH_BYTES = 32;
+    public static final String PEM_CERTIFICATE = "CERTIFICATE";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] BASE64_DIGITS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(HEX_DIGITS[i])] = (byte) i;
+        }
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        for (int i = 0; i < 64; i++) {
+            BASE64_VALUES[BASE64_DIGITS[i]] = (byte) i;
+        }
+    }
+
+    public static int hexEncode(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+        int out = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            dst[out++] = HEX_DIGITS[(src[i] >> 4) & 0xf];
+            dst[out++] = HEX_DIGITS[src[i] & 0xf];
+        }
+        return out - dstOffset;
+    }
+
+    public static String hexEncode(byte[] src) {
+        char[] out = new char[src.length * 2];
+        hexEncode(src, 0, src.length, out, 0);
+        return new String(out);
+    }
+
+    public static int hexDecode(CharSequence src, int start, int end, byte[] dst, int dstOffset) {
+        if (((end - start) & 1) != 0) {
+            throw new IllegalArgumentException("Invalid hex length");
+        }
+        int out = dstOffset;
+        for (int i = start; i < end; i += 2) {
+            int hi = hexValue(src.charAt(i));
+            int lo = hexValue(src.charAt(i + 1));
+            if ((hi | lo) < 0) {
+                throw new IllegalArgumentException("Invalid hex string");
+            }
+            dst[out++] = (byte) ((hi << 4) | lo);
+        }
+        return out - dstOffset;
+    }
+
+    /** Decodes hex, ignoring surrounding whitespace and an optional 0x prefix. */
+    public static byte[] hexDecode(CharSequence src) {
+        int start = hexStart(src);
+        int end = trimEnd(src, start);
+        byte[] out = new byte[(end - start) / 2];
+        hexDecode(src, start, end, out, 0);
+        return out;
+    }
+
+    /** Decodes a request hash, which must be exactly {@link #REQUEST_HASH_BYTES} bytes of hex. */
+    public static int decodeRequestHash(CharSequence src, byte[] dst, int dstOffset) {
+        if (src == null) {
+            throw new IllegalArgumentException("Missing requestHash");
+        }
+        int start = hexStart(src);
+        int end = trimEnd(src, start);
+        if (end - start != REQUEST_HASH_BYTES * 2) {
+            throw new IllegalArgumentException("requestHash must be " + REQUEST_HASH_BYTES + " bytes of hex");
+        }
+        return hexDecode(src, start, end, dst, dstOffset);
+    }
+
+    public static byte[] decodeRequestHash(CharSequence src) {
+        byte[] out = new byte[REQUEST_HASH_BYTES];
+        decodeRequestHash(src, out, 0);
+        return out;
+    }
+
+    public static int base64Length(int length) {
+        return (length + 2) / 3 * 4;
+    }
+
+    public static int base64Encode(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+        int out = dstOffset;
+        int end = offset + length - length % 3;
+        for (int i = offset; i < end; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            dst[out++] = BASE64_DIGITS[bits >>> 18];
+            dst[out++] = BASE64_DIGITS[(bits >>> 12) & 0x3f];
+            dst[out++] = BASE64_DIGITS[(bits >>> 6) & 0x3f];
+            dst[out++] = BASE64_DIGITS[bits & 0x3f];
+        }
+        int remaining = length % 3;
+        if (remaining > 0) {
+            int bits = (src[end] & 0xff) << 16 | (remaining == 2 ? (src[end + 1] & 0xff) << 8 : 0);
+            dst[out++] = BASE64_DIGITS[bits >>> 18];
+            dst[out++] = BASE64_DIGITS[(bits >>> 12) & 0x3f];
+            dst[out++] = remaining == 2 ? BASE64_DIGITS[(bits >>> 6) & 0x3f] : '=';
+            dst[out++] = '=';
+        }
+        return out - dstOffset;
+    }
+
+    public static String base64Encode(byte[] src) {
+        char[] out = new char[base64Length(src.length)];
+        base64Encode(src, 0, src.length, out, 0);
+        return new String(out);
+    }
+
+    public static int base64DecodedLength(CharSequence src, int start, int end) {
+        int length = end - start;
+        if ((length & 3) != 0) {
+            throw new IllegalArgumentException("Invalid base64 length");
+        }
+        if (length == 0) {
+            return 0;
+        }
+        int padding = src.charAt(end - 1) != '=' ? 0 : src.charAt(end - 2) != '=' ? 1 : 2;
+        return length / 4 * 3 - padding;
+    }
+
+    public static int base64Decode(CharSequence src, int start, int end, byte[] dst, int dstOffset) {
+        base64DecodedLength(src, start, end);
+        int out = dstOffset;
+        for (int i = start; i < end; i += 4) {
+            int bits = base64Value(src.charAt(i)) << 18 | base64Value(src.charAt(i + 1)) << 12;
+            char c2 = src.charAt(i + 2);
+            char c3 = src.charAt(i + 3);
+            if (i + 4 == end && c3 == '=') {
+                if (c2 != '=') {
+                    bits |= base64Value(c2) << 6;
+                }
+                // Bits below the last whole byte must be zero, so each input has one accepted encoding.
+                if ((bits & (c2 == '=' ? 0xffff : 0xff)) != 0) {
+                    throw new IllegalArgumentException("Invalid base64 padding");
+                }
+                dst[out++] = (byte) (bits >> 16);
+                if (c2 != '=') {
+                    dst[out++] = (byte) (bits >> 8);
+                }
+                break;
+            }
+            bits |= base64Value(c2) << 6 | base64Value(c3);
+            dst[out++] = (byte) (bits >> 16);
+            dst[out++] = (byte) (bits >> 8);
+            dst[out++] = (byte) bits;
+        }
+        return out - dstOffset;
+    }
+
+    public static byte[] base64Decode(CharSequence src) {
+        byte[] out = new byte[base64DecodedLength(src, 0, src.length())];
+        base64Decode(src, 0, src.length(), out, 0);
+        return out;
+    }
+
+    public static int pemLength(String label, int derLength) {
+        // "-----BEGIN " + label + "-----\n" + base64 + "\n-----END " + label + "-----"
+        return 11 + label.length() + 6 + base64Length(derLength) + 10 + label.length() + 5;
+    }
+
+    /** Writes a PEM block with the Base64 body on a single line, as backends expect. */
+    public static int pemEncode(String label, byte[] der, char[] dst, int dstOffset) {
+        int out = dstOffset;
+        out = put("-----BEGIN ", dst, out);
+        out = put(label, dst, out);
+        out = put("-----\n", dst, out);
+        out += base64Encode(der, 0, der.length, dst, out);
+        out = put("\n-----END ", dst, out);
+        out = put(label, dst, out);
+        out = put("-----", dst, out);
+        return out - dstOffset;
+    }
+
+    public static String pemEncode(String label, byte[] der) {
+        char[] out = new char[pemLength(label, der.length)];
+        pemEncode(label, der, out, 0);
+        return new String(out);
+    }
+
+    private static int put(String value, char[] dst, int offset) {
+        value.getChars(0, value.length(), dst, offset);
+        return offset + value.length();
+    }
+
+    private static int hexValue(char c) {
+        return c < 128 ? HEX_VALUES[c] : -1;
+    }
+
+    private static int base64Value(char c) {
+        int value = c < 128 ? BASE64_VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid base64 string");
+        }
+        return value;
+    }
+
+    private static int hexStart(CharSequence src) {
+        int start = 0;
+        int length = src.length();
+        while (start < length && Character.isWhitespace(src.charAt(start))) {
+            start++;
+        }
+        if (start + 1 < length && src.charAt(start) == '0' && (src.charAt(start + 1) | 0x20) == 'x') {
+            start += 2;
+        }
+        return start;
+    }
+
+    private static int trimEnd(CharSequence src, int start) {
+        int end = src.length();
+        while (end > start && Character.isWhitespace(src.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+}
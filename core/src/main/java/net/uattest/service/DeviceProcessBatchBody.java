@@ -0,0 +1,56 @@
+package net.uattest.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+public class DeviceProcessBatchBody implements HttpBody {
+    private final String projectId;
+    private final List<String> requestHashes;
+    private final List<List<String>> attestationChains;
+    private final byte[] deviceMetaJson;
+
+    public DeviceProcessBatchBody(
+            String projectId,
+            List<String> requestHashes,
+            List<List<String>> attestationChains,
+            byte[] deviceMetaJson
+    ) {
+        this.projectId = projectId;
+        this.requestHashes = requestHashes;
+        this.attestationChains = attestationChains;
+        this.deviceMetaJson = deviceMetaJson;
+    }
+
+    @Override
+    public String contentType() {
+        return "application/json";
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        writer.beginObject()
+                .name("projectId").value(projectId)
+                .name("items").beginArray();
+        for (int i = 0; i < requestHashes.size(); i++) {
+            writer.beginObject()
+                    .name("requestHash").value(requestHashes.get(i))
+                    .name("attestationChain").beginArray();
+            for (String cert : attestationChains.get(i)) {
+                writer.value(cert);
+            }
+            writer.endArray().endObject();
+        }
+        writer.endArray();
+        if (deviceMetaJson != null) {
+            writer.name("deviceMeta").rawValue(deviceMetaJson);
+        }
+        writer.endObject().flush();
+    }
+}
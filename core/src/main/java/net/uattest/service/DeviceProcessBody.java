@@ -0,0 +1,51 @@
+package net.uattest.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+public class DeviceProcessBody implements HttpBody {
+    private final String projectId;
+    private final String requestHash;
+    private final List<String> attestationChain;
+    private final byte[] deviceMetaJson;
+
+    public DeviceProcessBody(
+            String projectId,
+            String requestHash,
+            List<String> attestationChain,
+            byte[] deviceMetaJson
+    ) {
+        this.projectId = projectId;
+        this.requestHash = requestHash;
+        this.attestationChain = attestationChain;
+        this.deviceMetaJson = deviceMetaJson;
+    }
+
+    @Override
+    public String contentType() {
+        return "application/json";
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        writer.beginObject()
+                .name("projectId").value(projectId)
+                .name("requestHash").value(requestHash)
+                .name("attestationChain").beginArray();
+        for (String cert : attestationChain) {
+            writer.value(cert);
+        }
+        writer.endArray();
+        if (deviceMetaJson != null) {
+            writer.name("deviceMeta").rawValue(deviceMetaJson);
+        }
+        writer.endObject().flush();
+    }
+}
@@ -0,0 +1,86 @@
+package net.uattest.service;
+
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/** {@code DeviceProcessRequest} from device_process.proto, with certificates sent as raw DER. */
+public class DeviceProcessProtoBody implements HttpBody {
+    public static final String CONTENT_TYPE = "application/x-protobuf";
+
+    private static final int FIELD_PROJECT_ID = 1;
+    private static final int FIELD_REQUEST_HASH = 2;
+    private static final int FIELD_ATTESTATION_CHAIN = 3;
+    private static final int FIELD_DEVICE_META_JSON = 4;
+    private static final int CERT_DER = 1;
+    private static final int CERT_SHA256 = 2;
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+
+    private final String projectId;
+    private final byte[] requestHash;
+    private final byte[][] certificates;
+    private final boolean[] references;
+    private final byte[] deviceMetaJson;
+    private final int length;
+
+    public DeviceProcessProtoBody(
+            String projectId,
+            String requestHash,
+            List<String> attestationChain,
+            byte[] deviceMetaJson
+    ) {
+        this.projectId = projectId;
+        this.requestHash = Codec.decodeRequestHash(requestHash);
+        this.deviceMetaJson = deviceMetaJson;
+        int size = attestationChain.size();
+        certificates = new byte[size][];
+        references = new boolean[size];
+        int total = CodedOutputStream.computeStringSize(FIELD_PROJECT_ID, projectId)
+                + CodedOutputStream.computeByteArraySize(FIELD_REQUEST_HASH, this.requestHash);
+        for (int i = 0; i < size; i++) {
+            String cert = attestationChain.get(i);
+            references[i] = cert.startsWith(CertRefs.PREFIX);
+            certificates[i] = references[i]
+                    ? Codec.hexDecode(cert.substring(CertRefs.PREFIX.length()))
+                    : Codec.base64Decode(cert);
+            int certSize = CodedOutputStream.computeByteArraySize(
+                    references[i] ? CERT_SHA256 : CERT_DER, certificates[i]);
+            total += CodedOutputStream.computeTagSize(FIELD_ATTESTATION_CHAIN)
+                    + CodedOutputStream.computeUInt32SizeNoTag(certSize)
+                    + certSize;
+        }
+        if (deviceMetaJson != null) {
+            total += CodedOutputStream.computeByteArraySize(FIELD_DEVICE_META_JSON, deviceMetaJson);
+        }
+        length = total;
+    }
+
+    @Override
+    public String contentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        CodedOutputStream coded = CodedOutputStream.newInstance(out, Math.min(length, 8 * 1024));
+        coded.writeString(FIELD_PROJECT_ID, projectId);
+        coded.writeByteArray(FIELD_REQUEST_HASH, requestHash);
+        for (int i = 0; i < certificates.length; i++) {
+            int field = references[i] ? CERT_SHA256 : CERT_DER;
+            coded.writeTag(FIELD_ATTESTATION_CHAIN, WIRETYPE_LENGTH_DELIMITED);
+            coded.writeUInt32NoTag(CodedOutputStream.computeByteArraySize(field, certificates[i]));
+            coded.writeByteArray(field, certificates[i]);
+        }
+        if (deviceMetaJson != null) {
+            coded.writeByteArray(FIELD_DEVICE_META_JSON, deviceMetaJson);
+        }
+        coded.flush();
+    }
+}
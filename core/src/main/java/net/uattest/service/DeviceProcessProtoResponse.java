@@ -0,0 +1,66 @@
+package net.uattest.service;
+
+import com.google.protobuf.CodedInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** {@code DeviceProcessResponse} from device_process.proto. */
+public class DeviceProcessProtoResponse {
+    // Tags are (field number << 3) | wire type; 0 is varint, 2 is length-delimited.
+    private static final int TAG_TOKEN = 1 << 3 | 2;
+    private static final int TAG_EXPIRES_AT = 2 << 3;
+    private static final int TAG_EXPIRES_IN = 3 << 3;
+    private static final int TAG_CERT_REFS = 4 << 3 | 2;
+
+    public final String token;
+    public final long expiresAt;
+    public final long expiresIn;
+    /** Acknowledged certificate fingerprints as lowercase hex. */
+    public final List<String> certRefs;
+
+    private DeviceProcessProtoResponse(String token, long expiresAt, long expiresIn, List<String> certRefs) {
+        this.token = token;
+        this.expiresAt = expiresAt;
+        this.expiresIn = expiresIn;
+        this.certRefs = certRefs;
+    }
+
+    public static DeviceProcessProtoResponse parse(InputStream input, int maxBytes) throws IOException {
+        CodedInputStream coded = CodedInputStream.newInstance(input);
+        coded.setSizeLimit(maxBytes);
+        String token = null;
+        long expiresAt = 0;
+        long expiresIn = 0;
+        List<String> certRefs = Collections.emptyList();
+        int tag;
+        while ((tag = coded.readTag()) != 0) {
+            switch (tag) {
+                case TAG_TOKEN:
+                    token = coded.readStringRequireUtf8();
+                    break;
+                case TAG_EXPIRES_AT:
+                    expiresAt = coded.readInt64();
+                    break;
+                case TAG_EXPIRES_IN:
+                    expiresIn = coded.readInt64();
+                    break;
+                case TAG_CERT_REFS:
+                    if (certRefs.isEmpty()) {
+                        certRefs = new ArrayList<>();
+                    }
+                    certRefs.add(Codec.hexEncode(coded.readByteArray()));
+                    break;
+                default:
+                    if (!coded.skipField(tag)) {
+                        return new DeviceProcessProtoResponse(token, expiresAt, expiresIn, certRefs);
+                    }
+                    break;
+            }
+        }
+        return new DeviceProcessProtoResponse(token, expiresAt, expiresIn, certRefs);
+    }
+}
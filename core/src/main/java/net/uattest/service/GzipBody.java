@@ -0,0 +1,73 @@
+package net.uattest.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** A request body sent with {@code Content-Encoding: gzip}. */
+public class GzipBody implements HttpBody {
+    public static final String ENCODING = "gzip";
+
+    private final String contentType;
+    private final byte[] compressed;
+    private final int compressedLength;
+
+    private GzipBody(String contentType, byte[] compressed, int compressedLength) {
+        this.contentType = contentType;
+        this.compressed = compressed;
+        this.compressedLength = compressedLength;
+    }
+
+    /**
+     * Serializes {@code body} and compresses it if it is at least {@code minBytes} long.
+     * Smaller bodies are returned as plain, already-serialized bytes.
+     */
+    public static HttpBody compress(HttpBody body, int minBytes) throws IOException {
+        long declared = body.contentLength();
+        if (declared >= 0 && declared < minBytes) {
+            return body;
+        }
+        Buffer raw = new Buffer(declared > 0 ? (int) declared : 8 * 1024);
+        body.writeTo(raw);
+        if (raw.size() < minBytes) {
+            return HttpBody.ofBytes(body.contentType(), raw.toByteArray());
+        }
+        Buffer packed = new Buffer(raw.size() / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(packed, 8 * 1024)) {
+            gzip.write(raw.array(), 0, raw.size());
+        }
+        return new GzipBody(body.contentType(), packed.array(), packed.size());
+    }
+
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public String contentEncoding() {
+        return ENCODING;
+    }
+
+    @Override
+    public long contentLength() {
+        return compressedLength;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(compressed, 0, compressedLength);
+    }
+
+    /** Exposes the backing array so the serialized body is not copied again before compression. */
+    private static class Buffer extends ByteArrayOutputStream {
+        Buffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
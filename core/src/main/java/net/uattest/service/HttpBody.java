@@ -0,0 +1,36 @@
+package net.uattest.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface HttpBody {
+    String contentType();
+
+    long contentLength();
+
+    /** The {@code Content-Encoding} the body is already encoded with, or null. */
+    default String contentEncoding() {
+        return null;
+    }
+
+    void writeTo(OutputStream out) throws IOException;
+
+    static HttpBody ofBytes(String contentType, byte[] bytes) {
+        return new HttpBody() {
+            @Override
+            public String contentType() {
+                return contentType;
+            }
+
+            @Override
+            public long contentLength() {
+                return bytes.length;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(bytes);
+            }
+        };
+    }
+}
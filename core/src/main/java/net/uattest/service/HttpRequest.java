@@ -0,0 +1,49 @@
+package net.uattest.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class HttpRequest {
+    public final String backendKey;
+    public final String method;
+    public final String url;
+    public final Map<String, String> headers;
+    public final HttpBody body;
+    public final long timeoutMs;
+
+    private HttpRequest(
+            String backendKey,
+            String method,
+            String url,
+            Map<String, String> headers,
+            HttpBody body,
+            long timeoutMs
+    ) {
+        this.backendKey = backendKey;
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.body = body;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public static HttpRequest get(String backendKey, String url, long timeoutMs) {
+        return new HttpRequest(backendKey, "GET", url, Collections.emptyMap(), null, timeoutMs);
+    }
+
+    public static HttpRequest post(
+            String backendKey,
+            String url,
+            HttpBody body,
+            String authToken,
+            long timeoutMs
+    ) {
+        Map<String, String> headers = Collections.emptyMap();
+        if (authToken != null) {
+            headers = new LinkedHashMap<>();
+            headers.put("Authorization", "Bearer " + authToken);
+        }
+        return new HttpRequest(backendKey, "POST", url, headers, body, timeoutMs);
+    }
+}
@@ -0,0 +1,155 @@
+package net.uattest.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class JsonStreamWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[512];
+    private int position;
+    private boolean needsComma;
+
+    public JsonStreamWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public JsonStreamWriter beginObject() throws IOException {
+        separator();
+        put('{');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonStreamWriter endObject() throws IOException {
+        put('}');
+        needsComma = true;
+        return this;
+    }
+
+    public JsonStreamWriter beginArray() throws IOException {
+        separator();
+        put('[');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonStreamWriter endArray() throws IOException {
+        put(']');
+        needsComma = true;
+        return this;
+    }
+
+    public JsonStreamWriter name(String name) throws IOException {
+        separator();
+        quoted(name);
+        put(':');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonStreamWriter value(String value) throws IOException {
+        separator();
+        if (value == null) {
+            ascii("null");
+        } else {
+            quoted(value);
+        }
+        needsComma = true;
+        return this;
+    }
+
+    public JsonStreamWriter value(long value) throws IOException {
+        separator();
+        ascii(Long.toString(value));
+        needsComma = true;
+        return this;
+    }
+
+    public JsonStreamWriter value(boolean value) throws IOException {
+        separator();
+        ascii(value ? "true" : "false");
+        needsComma = true;
+        return this;
+    }
+
+    public JsonStreamWriter rawValue(byte[] json) throws IOException {
+        separator();
+        flushBuffer();
+        out.write(json);
+        needsComma = true;
+        return this;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    private void separator() throws IOException {
+        if (needsComma) {
+            put(',');
+        }
+    }
+
+    private void quoted(String value) throws IOException {
+        put('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                put('\\');
+                put(c);
+            } else if (c < 0x20) {
+                escape(c);
+            } else if (c < 0x80) {
+                put(c);
+            } else if (c < 0x800) {
+                put(0xc0 | (c >> 6));
+                put(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                put(0xf0 | (cp >> 18));
+                put(0x80 | ((cp >> 12) & 0x3f));
+                put(0x80 | ((cp >> 6) & 0x3f));
+                put(0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                escape(c);
+            } else {
+                put(0xe0 | (c >> 12));
+                put(0x80 | ((c >> 6) & 0x3f));
+                put(0x80 | (c & 0x3f));
+            }
+        }
+        put('"');
+    }
+
+    private void escape(char c) throws IOException {
+        put('\\');
+        put('u');
+        put(HEX[(c >> 12) & 0xf]);
+        put(HEX[(c >> 8) & 0xf]);
+        put(HEX[(c >> 4) & 0xf]);
+        put(HEX[c & 0xf]);
+    }
+
+    private void ascii(String value) throws IOException {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            put(value.charAt(i));
+        }
+    }
+
+    private void put(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
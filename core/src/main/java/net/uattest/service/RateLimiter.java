@@ -0,0 +1,203 @@
+package net.uattest.service;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+public class RateLimiter {
+    private static final int DEFAULT_MAX_BUCKETS = 4096;
+
+    private final Limit defaultLimit;
+    private final int maxBuckets;
+    private final LongSupplier clock;
+    private final Map<Key, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, Limit> projectLimits = new ConcurrentHashMap<>();
+    private final Map<String, Limit> backendLimits = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweepNanos = new AtomicLong();
+
+    public RateLimiter(int maxTokens, long windowMs) {
+        this(maxTokens, windowMs, DEFAULT_MAX_BUCKETS, System::nanoTime);
+    }
+
+    public RateLimiter(int maxTokens, long windowMs, int maxBuckets, LongSupplier nanoClock) {
+        this.defaultLimit = new Limit(maxTokens, windowMs);
+        this.maxBuckets = maxBuckets;
+        this.clock = nanoClock;
+        this.lastSweepNanos.set(nanoClock.getAsLong());
+    }
+
+    public void setProjectLimit(String projectId, int maxTokens, long windowMs) {
+        Limit limit = new Limit(maxTokens, windowMs);
+        projectLimits.put(projectId, limit);
+        rebind(key -> key.backendId == null && projectId.equals(key.projectId), limit);
+    }
+
+    public void setBackendLimit(String backendId, int maxTokens, long windowMs) {
+        Limit limit = new Limit(maxTokens, windowMs);
+        backendLimits.put(backendId, limit);
+        rebind(key -> backendId.equals(key.backendId), limit);
+    }
+
+    public boolean tryAcquire(int uid) {
+        return tryAcquire(uid, null, null);
+    }
+
+    /** {@code projectId} must already be verified to belong to {@code uid}; it selects the caller's bucket. */
+    public boolean tryAcquire(int uid, String projectId, String backendId) {
+        return tryAcquire(uid, projectId) && tryAcquireBackend(uid, projectId, backendId);
+    }
+
+    /** Charges only the caller's bucket, for use before the backend is known. */
+    public boolean tryAcquire(int uid, String projectId) {
+        long now = clock.getAsLong();
+        maybeSweep(now);
+        Limit callerLimit = projectId != null ? projectLimits.get(projectId) : null;
+        return bucket(new Key(uid, projectId, null), callerLimit != null ? callerLimit : defaultLimit, now)
+                .tryAcquire(now);
+    }
+
+    /**
+     * Charges the per-backend bucket after {@link #tryAcquire(int, String)} succeeded. On rejection
+     * the caller's token is returned.
+     */
+    public boolean tryAcquireBackend(int uid, String projectId, String backendId) {
+        Limit backendLimit = backendId != null ? backendLimits.get(backendId) : null;
+        if (backendLimit == null) {
+            return true;
+        }
+        long now = clock.getAsLong();
+        if (bucket(new Key(uid, null, backendId), backendLimit, now).tryAcquire(now)) {
+            return true;
+        }
+        Bucket caller = buckets.get(new Key(uid, projectId, null));
+        if (caller != null) {
+            caller.refund();
+        }
+        return false;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private Bucket bucket(Key key, Limit limit, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxBuckets) {
+            evict(now, true);
+        }
+        Bucket created = new Bucket(limit, now);
+        bucket = buckets.putIfAbsent(key, created);
+        return bucket != null ? bucket : created;
+    }
+
+    /** Moves existing buckets to a reconfigured limit, keeping the time they have already used. */
+    private void rebind(Predicate<Key> scope, Limit limit) {
+        for (Map.Entry<Key, Bucket> entry : buckets.entrySet()) {
+            if (scope.test(entry.getKey())) {
+                entry.getValue().limit = limit;
+            }
+        }
+    }
+
+    private void maybeSweep(long now) {
+        long last = lastSweepNanos.get();
+        if (now - last >= defaultLimit.windowNanos && lastSweepNanos.compareAndSet(last, now)) {
+            evict(now, false);
+        }
+    }
+
+    private void evict(long now, boolean force) {
+        Key oldestKey = null;
+        long oldestTat = 0;
+        for (Map.Entry<Key, Bucket> entry : buckets.entrySet()) {
+            long tat = entry.getValue().tat.get();
+            if (tat - now <= 0) {
+                // A bucket whose theoretical arrival time has passed is indistinguishable from a new one.
+                buckets.remove(entry.getKey(), entry.getValue());
+            } else if (oldestKey == null || tat - oldestTat < 0) {
+                oldestTat = tat;
+                oldestKey = entry.getKey();
+            }
+        }
+        if (force && oldestKey != null && buckets.size() >= maxBuckets) {
+            buckets.remove(oldestKey);
+        }
+    }
+
+    private static final class Limit {
+        final long windowNanos;
+        final long intervalNanos;
+        final long toleranceNanos;
+
+        Limit(int maxTokens, long windowMs) {
+            if (maxTokens <= 0 || windowMs <= 0) {
+                throw new IllegalArgumentException("Invalid rate limit");
+            }
+            this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+            this.intervalNanos = Math.max(1, windowNanos / maxTokens);
+            this.toleranceNanos = intervalNanos * (maxTokens - 1);
+        }
+    }
+
+    private static final class Bucket {
+        volatile Limit limit;
+        final AtomicLong tat;
+
+        Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.tat = new AtomicLong(now);
+        }
+
+        boolean tryAcquire(long now) {
+            Limit limit = this.limit;
+            while (true) {
+                long current = tat.get();
+                long base = current - now > 0 ? current : now;
+                if (base - now > limit.toleranceNanos) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, base + limit.intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        void refund() {
+            tat.addAndGet(-limit.intervalNanos);
+        }
+    }
+
+    private static final class Key {
+        final int uid;
+        final String projectId;
+        final String backendId;
+
+        Key(int uid, String projectId, String backendId) {
+            this.uid = uid;
+            this.projectId = projectId;
+            this.backendId = backendId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return uid == other.uid
+                    && Objects.equals(projectId, other.projectId)
+                    && Objects.equals(backendId, other.backendId);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * uid + Objects.hashCode(projectId)) * 31 + Objects.hashCode(backendId);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package net.uattest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+public class BackendLogCodecTest {
+    private static final String A = "https://a.example/";
+    private static final String B = "https://b.example/";
+
+    @Test
+    public void replaysPutStatusAndRemove() throws IOException {
+        BackendEntry a = entry(A, "backend-a", true);
+        a.capabilities = Set.of(BackendEntry.CAPABILITY_BATCH, BackendEntry.CAPABILITY_GZIP);
+        byte[] log = log(
+                BackendLogCodec.encodePut(a),
+                BackendLogCodec.encodePut(entry(B, null, false)),
+                BackendLogCodec.encodeStatus(A, "ok", 1234L),
+                BackendLogCodec.encodeStatus("https://missing.example/", "ok", 1L),
+                BackendLogCodec.encodeRemove(B)
+        );
+
+        Map<String, BackendEntry> entries = new LinkedHashMap<>();
+        assertEquals(log.length, BackendLogCodec.replay(log, log.length, entries));
+
+        assertEquals(List.of(A), new ArrayList<>(entries.keySet()));
+        BackendEntry replayed = entries.get(A);
+        assertEquals("backend-a", replayed.backendId);
+        assertTrue(replayed.enabled);
+        assertEquals("ok", replayed.lastStatus);
+        assertEquals(1234L, replayed.lastCheckedAt);
+        assertEquals(a.capabilities, replayed.capabilities);
+    }
+
+    @Test
+    public void putReplacesEarlierEntryForSameUrl() throws IOException {
+        BackendEntry later = entry(A, "renamed", false);
+        byte[] log = log(BackendLogCodec.encodePut(entry(A, "backend-a", true)), BackendLogCodec.encodePut(later));
+
+        Map<String, BackendEntry> entries = new LinkedHashMap<>();
+        BackendLogCodec.replay(log, log.length, entries);
+
+        assertEquals(1, entries.size());
+        assertSameEntry(later, entries.get(A));
+    }
+
+    @Test
+    public void dropsTruncatedFinalRecord() throws IOException {
+        byte[] first = BackendLogCodec.encodePut(entry(A, "backend-a", true));
+        byte[] second = BackendLogCodec.encodePut(entry(B, "backend-b", true));
+        byte[] log = log(first, second);
+
+        for (int cut = 1; cut < second.length; cut++) {
+            Map<String, BackendEntry> entries = new LinkedHashMap<>();
+            int valid = BackendLogCodec.replay(log, log.length - cut, entries);
+
+            assertEquals("cut=" + cut, BackendLogCodec.HEADER_BYTES + first.length, valid);
+            assertEquals(List.of(A), new ArrayList<>(entries.keySet()));
+        }
+    }
+
+    @Test
+    public void stopsAtCrcMismatch() throws IOException {
+        byte[] first = BackendLogCodec.encodePut(entry(A, "backend-a", true));
+        byte[] second = BackendLogCodec.encodePut(entry(B, "backend-b", true));
+        byte[] third = BackendLogCodec.encodeRemove(A);
+        byte[] log = log(first, second, third);
+        // Flip a bit in the second record's payload; its checksum no longer matches.
+        log[BackendLogCodec.HEADER_BYTES + first.length + 7] ^= 0x01;
+
+        Map<String, BackendEntry> entries = new LinkedHashMap<>();
+        int valid = BackendLogCodec.replay(log, log.length, entries);
+
+        assertEquals(BackendLogCodec.HEADER_BYTES + first.length, valid);
+        // Records after the corrupt one are not applied either.
+        assertEquals(List.of(A), new ArrayList<>(entries.keySet()));
+    }
+
+    @Test
+    public void rejectsUnknownVersion() throws IOException {
+        byte[] log = log(BackendLogCodec.encodePut(entry(A, "backend-a", true)));
+        ByteBuffer.wrap(log).putInt(4, BackendLogCodec.VERSION + 1);
+
+        try {
+            BackendLogCodec.replay(log, log.length, new LinkedHashMap<>());
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("version"));
+        }
+    }
+
+    @Test
+    public void rejectsMissingHeader() {
+        byte[] data = "[{\"url\":\"https://a.example/\"}]".getBytes();
+        try {
+            BackendLogCodec.replay(data, data.length, new LinkedHashMap<>());
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // A legacy or foreign file is never replayed as records.
+        }
+    }
+
+    @Test
+    public void skipsUnknownRecordType() throws IOException {
+        byte[] put = BackendLogCodec.encodePut(entry(A, "backend-a", true));
+        byte[] unknown = BackendLogCodec.encodeRemove(A);
+        unknown[0] = 42;
+        fixCrc(unknown);
+        byte[] log = log(put, unknown);
+
+        Map<String, BackendEntry> entries = new LinkedHashMap<>();
+        assertEquals(log.length, BackendLogCodec.replay(log, log.length, entries));
+        assertTrue(entries.containsKey(A));
+    }
+
+    @Test
+    public void compactedLogReadsBackIdentically() throws IOException {
+        BackendEntry a = entry(A, "backend-a", true);
+        a.capabilities = Set.of(BackendEntry.CAPABILITY_PROTOBUF);
+        List<byte[]> records = new ArrayList<>();
+        records.add(BackendLogCodec.encodePut(a));
+        records.add(BackendLogCodec.encodePut(entry(B, null, false)));
+        for (int i = 0; i < 50; i++) {
+            records.add(BackendLogCodec.encodeStatus(A, i % 2 == 0 ? "ok" : "down", i));
+        }
+        records.add(BackendLogCodec.encodePut(entry("https://c.example/", "backend-c", true)));
+        records.add(BackendLogCodec.encodeRemove("https://c.example/"));
+        byte[] log = log(records.toArray(new byte[0][]));
+        Map<String, BackendEntry> original = new LinkedHashMap<>();
+        BackendLogCodec.replay(log, log.length, original);
+
+        // Compaction writes the header and one PUT per live entry, as BackendStore.compact does.
+        List<byte[]> puts = new ArrayList<>();
+        for (BackendEntry entry : original.values()) {
+            puts.add(BackendLogCodec.encodePut(entry));
+        }
+        byte[] compacted = log(puts.toArray(new byte[0][]));
+        Map<String, BackendEntry> reread = new LinkedHashMap<>();
+        assertEquals(compacted.length, BackendLogCodec.replay(compacted, compacted.length, reread));
+
+        assertTrue(compacted.length < log.length);
+        assertEquals(new ArrayList<>(original.keySet()), new ArrayList<>(reread.keySet()));
+        for (String url : original.keySet()) {
+            assertSameEntry(original.get(url), reread.get(url));
+        }
+    }
+
+    @Test
+    public void preservesNullStrings() throws IOException {
+        byte[] log = log(BackendLogCodec.encodePut(entry(A, null, true)));
+
+        Map<String, BackendEntry> entries = new LinkedHashMap<>();
+        BackendLogCodec.replay(log, log.length, entries);
+
+        assertNull(entries.get(A).backendId);
+        assertNull(entries.get(A).lastStatus);
+        assertFalse(entries.get(A).supports(BackendEntry.CAPABILITY_BATCH));
+    }
+
+    private static void assertSameEntry(BackendEntry expected, BackendEntry actual) {
+        assertEquals(expected.url, actual.url);
+        assertEquals(expected.backendId, actual.backendId);
+        assertEquals(expected.enabled, actual.enabled);
+        assertEquals(expected.lastStatus, actual.lastStatus);
+        assertEquals(expected.lastCheckedAt, actual.lastCheckedAt);
+        assertEquals(expected.capabilities, actual.capabilities);
+    }
+
+    private static BackendEntry entry(String url, String backendId, boolean enabled) {
+        return new BackendEntry(backendId, url, enabled);
+    }
+
+    private static byte[] log(byte[]... records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(BackendLogCodec.header());
+        for (byte[] record : records) {
+            out.writeBytes(record);
+        }
+        return out.toByteArray();
+    }
+
+    private static void fixCrc(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record[0]);
+        crc.update(record, 5, record.length - 9);
+        ByteBuffer.wrap(record).putInt(record.length - 4, (int) crc.getValue());
+    }
+}
@@ -0,0 +1,175 @@
+package net.uattest.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Random;
+
+public class CodecTest {
+    private static final String HASH_HEX = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    @Test
+    public void hexMatchesHexFormat() {
+        Random random = new Random(1);
+        for (int length = 0; length < 80; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            String expected = HexFormat.of().formatHex(bytes);
+
+            assertEquals(expected, Codec.hexEncode(bytes));
+            assertArrayEquals(bytes, Codec.hexDecode(expected));
+            assertArrayEquals(bytes, Codec.hexDecode(expected.toUpperCase()));
+        }
+    }
+
+    @Test
+    public void base64MatchesJavaUtil() {
+        Random random = new Random(2);
+        for (int length = 0; length < 200; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            String expected = Base64.getEncoder().encodeToString(bytes);
+
+            assertEquals(expected, Codec.base64Encode(bytes));
+            assertArrayEquals(bytes, Codec.base64Decode(expected));
+            assertEquals(bytes.length, Codec.base64DecodedLength(expected, 0, expected.length()));
+        }
+    }
+
+    @Test
+    public void base64DecodesIntoOffset() {
+        byte[] bytes = {1, 2, 3, 4, 5};
+        String encoded = "xx" + Base64.getEncoder().encodeToString(bytes) + "yy";
+        byte[] dst = new byte[8];
+
+        int written = Codec.base64Decode(encoded, 2, encoded.length() - 2, dst, 3);
+
+        assertEquals(5, written);
+        assertArrayEquals(new byte[] {0, 0, 0, 1, 2, 3, 4, 5}, dst);
+    }
+
+    @Test
+    public void base64RejectsBadLength() {
+        assertBase64Rejected("A");
+        assertBase64Rejected("AB");
+        assertBase64Rejected("ABC");
+        assertBase64Rejected("ABCDE");
+        assertBase64Rejected("AB=");
+    }
+
+    @Test
+    public void base64RejectsBadCharacters() {
+        assertBase64Rejected("AB*D");
+        assertBase64Rejected("AB-_");
+        assertBase64Rejected("ABéD");
+        assertBase64Rejected("AB D");
+        assertBase64Rejected("ABCD\nABCD");
+    }
+
+    @Test
+    public void base64RejectsMisplacedPadding() {
+        assertBase64Rejected("====");
+        assertBase64Rejected("A===");
+        assertBase64Rejected("AB=C");
+        assertBase64Rejected("AB==ABCD");
+        assertBase64Rejected("=ABC");
+    }
+
+    @Test
+    public void base64RejectsNonZeroTrailingBits() {
+        // "AA==" and "AAA=" are canonical; any other final digit leaves bits set past the last byte.
+        assertArrayEquals(new byte[] {0}, Codec.base64Decode("AA=="));
+        assertArrayEquals(new byte[] {0, 0}, Codec.base64Decode("AAA="));
+        assertBase64Rejected("AB==");
+        assertBase64Rejected("AP==");
+        assertBase64Rejected("AAB=");
+        assertBase64Rejected("AAD=");
+        // Every canonical single- and double-byte encoding still decodes.
+        for (int b = 0; b < 256; b++) {
+            byte[] one = {(byte) b};
+            byte[] two = {(byte) b, (byte) (255 - b)};
+            assertArrayEquals(one, Codec.base64Decode(Base64.getEncoder().encodeToString(one)));
+            assertArrayEquals(two, Codec.base64Decode(Base64.getEncoder().encodeToString(two)));
+        }
+    }
+
+    @Test
+    public void hexRejectsBadInput() {
+        assertHexRejected("abc");
+        assertHexRejected("zz");
+        assertHexRejected("0g");
+        assertHexRejected("a٠");
+        assertHexRejected("12 34");
+    }
+
+    @Test
+    public void requestHashAcceptsCanonicalForms() {
+        byte[] expected = HexFormat.of().parseHex(HASH_HEX);
+
+        assertArrayEquals(expected, Codec.decodeRequestHash(HASH_HEX));
+        assertArrayEquals(expected, Codec.decodeRequestHash(HASH_HEX.toUpperCase()));
+        assertArrayEquals(expected, Codec.decodeRequestHash("0x" + HASH_HEX));
+        assertArrayEquals(expected, Codec.decodeRequestHash("0X" + HASH_HEX));
+        assertArrayEquals(expected, Codec.decodeRequestHash("  " + HASH_HEX + "\n"));
+    }
+
+    @Test
+    public void requestHashRejectsWrongLengthAndCharacters() {
+        assertRequestHashRejected(null);
+        assertRequestHashRejected("");
+        assertRequestHashRejected("0x");
+        assertRequestHashRejected(HASH_HEX.substring(2));
+        assertRequestHashRejected(HASH_HEX + "00");
+        assertRequestHashRejected(HASH_HEX.substring(1));
+        assertRequestHashRejected("zz" + HASH_HEX.substring(2));
+        assertRequestHashRejected(HASH_HEX.substring(0, 32) + " " + HASH_HEX.substring(33));
+        assertRequestHashRejected("0x0x" + HASH_HEX.substring(4));
+        assertRequestHashRejected("-" + HASH_HEX.substring(1));
+        // Base64 of the same 32 bytes is not accepted as a hash.
+        assertRequestHashRejected(Base64.getEncoder().encodeToString(HexFormat.of().parseHex(HASH_HEX)));
+    }
+
+    @Test
+    public void pemWrapsBase64OnOneLine() {
+        byte[] der = {0x30, 0x03, 0x02, 0x01, 0x01};
+
+        String pem = Codec.pemEncode(Codec.PEM_CERTIFICATE, der);
+
+        assertEquals("-----BEGIN CERTIFICATE-----\n"
+                + Base64.getEncoder().encodeToString(der)
+                + "\n-----END CERTIFICATE-----", pem);
+        assertEquals(pem.length(), Codec.pemLength(Codec.PEM_CERTIFICATE, der.length));
+    }
+
+    private static void assertBase64Rejected(String input) {
+        try {
+            Codec.base64Decode(input);
+            fail("Accepted base64 " + input);
+        } catch (IllegalArgumentException expected) {
+            // Rejected.
+        }
+    }
+
+    private static void assertHexRejected(String input) {
+        try {
+            Codec.hexDecode(input);
+            fail("Accepted hex " + input);
+        } catch (IllegalArgumentException expected) {
+            // Rejected.
+        }
+    }
+
+    private static void assertRequestHashRejected(String input) {
+        try {
+            Codec.decodeRequestHash(input);
+            fail("Accepted request hash " + input);
+        } catch (IllegalArgumentException expected) {
+            // Rejected.
+        }
+    }
+}
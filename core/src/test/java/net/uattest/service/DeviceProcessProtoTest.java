@@ -0,0 +1,302 @@
+package net.uattest.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the hand-written protobuf encoding against the field numbers and types declared in
+ * {@code src/main/proto/device_process.proto}, so the two cannot drift apart silently.
+ */
+public class DeviceProcessProtoTest {
+    private static final Pattern MESSAGE = Pattern.compile("^\\s*message\\s+(\\w+)\\s*\\{");
+    private static final Pattern FIELD = Pattern.compile("^\\s*(?:repeated\\s+)?(\\w+)\\s+(\\w+)\\s*=\\s*(\\d+)\\s*;");
+
+    private static Map<String, Map<String, ProtoField>> schema;
+
+    private static final class ProtoField {
+        final String type;
+        final int number;
+
+        ProtoField(String type, int number) {
+            this.type = type;
+            this.number = number;
+        }
+
+        int wireType() {
+            switch (type) {
+                case "int32":
+                case "int64":
+                case "uint32":
+                case "uint64":
+                case "bool":
+                    return WireFormat.WIRETYPE_VARINT;
+                default:
+                    return WireFormat.WIRETYPE_LENGTH_DELIMITED;
+            }
+        }
+    }
+
+    @BeforeClass
+    public static void readSchema() throws IOException {
+        schema = new HashMap<>();
+        Map<String, ProtoField> fields = null;
+        for (String line : Files.readAllLines(new File("src/main/proto/device_process.proto").toPath())) {
+            Matcher message = MESSAGE.matcher(line);
+            if (message.find()) {
+                fields = new HashMap<>();
+                schema.put(message.group(1), fields);
+                continue;
+            }
+            Matcher field = FIELD.matcher(line);
+            if (field.find() && fields != null) {
+                fields.put(field.group(2), new ProtoField(field.group(1), Integer.parseInt(field.group(3))));
+            }
+        }
+        assertTrue(schema.containsKey("DeviceProcessRequest"));
+        assertTrue(schema.containsKey("Certificate"));
+        assertTrue(schema.containsKey("DeviceProcessResponse"));
+    }
+
+    @Test
+    public void requestMatchesProtoAndContentLength() throws IOException {
+        byte[] hash = bytes(32, 1);
+        byte[] leaf = bytes(10_000, 2);
+        byte[] root = bytes(300, 3);
+        byte[] fingerprint = bytes(32, 4);
+        byte[] meta = "{\"sdk\":34}".getBytes(StandardCharsets.UTF_8);
+        List<String> chain = List.of(
+                Codec.base64Encode(leaf),
+                CertRefs.PREFIX + Codec.hexEncode(fingerprint),
+                Codec.base64Encode(root)
+        );
+
+        DeviceProcessProtoBody body = new DeviceProcessProtoBody("com.example.app", Codec.hexEncode(hash), chain, meta);
+        byte[] written = write(body);
+
+        assertEquals(written.length, body.contentLength());
+        Request request = decodeRequest(written);
+        assertEquals("com.example.app", request.projectId);
+        assertArrayEquals(hash, request.requestHash);
+        assertArrayEquals(meta, request.deviceMetaJson);
+        assertEquals(3, request.chain.size());
+        assertArrayEquals(leaf, request.chain.get(0).der);
+        assertNull(request.chain.get(0).sha256);
+        assertArrayEquals(fingerprint, request.chain.get(1).sha256);
+        assertNull(request.chain.get(1).der);
+        assertArrayEquals(root, request.chain.get(2).der);
+    }
+
+    @Test
+    public void requestWithoutMetaOrChain() throws IOException {
+        byte[] hash = bytes(32, 5);
+
+        DeviceProcessProtoBody body = new DeviceProcessProtoBody("p", Codec.hexEncode(hash), List.of(), null);
+        byte[] written = write(body);
+
+        assertEquals(written.length, body.contentLength());
+        Request request = decodeRequest(written);
+        assertEquals("p", request.projectId);
+        assertArrayEquals(hash, request.requestHash);
+        assertTrue(request.chain.isEmpty());
+        assertNull(request.deviceMetaJson);
+    }
+
+    @Test
+    public void parsesResponseFields() throws IOException {
+        byte[] first = bytes(32, 6);
+        byte[] second = bytes(32, 7);
+        byte[] encoded = response(out -> {
+            writeString(out, "DeviceProcessResponse", "token", "tok-123");
+            writeInt64(out, "DeviceProcessResponse", "expires_at", 1_700_000_000L);
+            writeInt64(out, "DeviceProcessResponse", "expires_in", 300L);
+            writeBytes(out, "DeviceProcessResponse", "cert_refs", first);
+            writeBytes(out, "DeviceProcessResponse", "cert_refs", second);
+        });
+
+        DeviceProcessProtoResponse response = DeviceProcessProtoResponse.parse(new ByteArrayInputStream(encoded), 4096);
+
+        assertEquals("tok-123", response.token);
+        assertEquals(1_700_000_000L, response.expiresAt);
+        assertEquals(300L, response.expiresIn);
+        assertEquals(List.of(Codec.hexEncode(first), Codec.hexEncode(second)), response.certRefs);
+    }
+
+    @Test
+    public void skipsUnknownResponseFields() throws IOException {
+        byte[] encoded = response(out -> {
+            out.writeUInt64(20, 42);
+            writeString(out, "DeviceProcessResponse", "token", "tok");
+            out.writeByteArray(21, bytes(100, 8));
+            out.writeFixed32(22, 7);
+            out.writeFixed64(23, 9);
+            writeInt64(out, "DeviceProcessResponse", "expires_in", 60L);
+            out.writeString(24, "newer field");
+        });
+
+        DeviceProcessProtoResponse response = DeviceProcessProtoResponse.parse(new ByteArrayInputStream(encoded), 4096);
+
+        assertEquals("tok", response.token);
+        assertEquals(60L, response.expiresIn);
+        assertTrue(response.certRefs.isEmpty());
+    }
+
+    @Test
+    public void parsesResponseAtMaxBytes() throws IOException {
+        byte[] encoded = response(out -> {
+            writeString(out, "DeviceProcessResponse", "token", "x".repeat(5000));
+            writeInt64(out, "DeviceProcessResponse", "expires_in", 60L);
+        });
+
+        DeviceProcessProtoResponse response =
+                DeviceProcessProtoResponse.parse(new ByteArrayInputStream(encoded), encoded.length);
+
+        assertEquals(5000, response.token.length());
+        try {
+            DeviceProcessProtoResponse.parse(new ByteArrayInputStream(encoded), encoded.length - 1);
+            fail("Expected a response over maxBytes to be rejected");
+        } catch (IOException expected) {
+            // InvalidProtocolBufferException: size limit exceeded.
+        }
+    }
+
+    @Test
+    public void emptyResponseHasNoToken() throws IOException {
+        DeviceProcessProtoResponse response = DeviceProcessProtoResponse.parse(new ByteArrayInputStream(new byte[0]), 16);
+
+        assertNull(response.token);
+        assertNotNull(response.certRefs);
+    }
+
+    private static final class Certificate {
+        byte[] der;
+        byte[] sha256;
+    }
+
+    private static final class Request {
+        String projectId;
+        byte[] requestHash;
+        byte[] deviceMetaJson;
+        final List<Certificate> chain = new ArrayList<>();
+    }
+
+    private static Request decodeRequest(byte[] bytes) throws IOException {
+        Map<String, ProtoField> fields = schema.get("DeviceProcessRequest");
+        Request request = new Request();
+        CodedInputStream in = CodedInputStream.newInstance(bytes);
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            String name = fieldFor("DeviceProcessRequest", tag);
+            switch (name) {
+                case "project_id":
+                    request.projectId = in.readStringRequireUtf8();
+                    break;
+                case "request_hash":
+                    request.requestHash = in.readByteArray();
+                    break;
+                case "attestation_chain":
+                    request.chain.add(decodeCertificate(in.readByteArray()));
+                    break;
+                case "device_meta_json":
+                    request.deviceMetaJson = in.readByteArray();
+                    break;
+                default:
+                    fail("Unhandled field " + name + " in " + fields.keySet());
+            }
+        }
+        return request;
+    }
+
+    private static Certificate decodeCertificate(byte[] bytes) throws IOException {
+        Certificate certificate = new Certificate();
+        CodedInputStream in = CodedInputStream.newInstance(bytes);
+        int tag;
+        int values = 0;
+        while ((tag = in.readTag()) != 0) {
+            String name = fieldFor("Certificate", tag);
+            if (name.equals("der")) {
+                certificate.der = in.readByteArray();
+            } else if (name.equals("sha256")) {
+                certificate.sha256 = in.readByteArray();
+            } else {
+                fail("Unhandled field " + name);
+            }
+            values++;
+        }
+        assertEquals("Certificate is a oneof", 1, values);
+        return certificate;
+    }
+
+    /** Maps a tag to its field name in {@code message}, failing on unknown numbers or wrong wire types. */
+    private static String fieldFor(String message, int tag) {
+        int number = WireFormat.getTagFieldNumber(tag);
+        for (Map.Entry<String, ProtoField> entry : schema.get(message).entrySet()) {
+            if (entry.getValue().number == number) {
+                assertEquals(message + "." + entry.getKey() + " wire type",
+                        entry.getValue().wireType(), WireFormat.getTagWireType(tag));
+                return entry.getKey();
+            }
+        }
+        throw new AssertionError("Field " + number + " is not declared in " + message);
+    }
+
+    private interface Writer {
+        void write(CodedOutputStream out) throws IOException;
+    }
+
+    private static byte[] response(Writer writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        writer.write(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(CodedOutputStream out, String message, String field, String value) throws IOException {
+        out.writeString(schema.get(message).get(field).number, value);
+    }
+
+    private static void writeInt64(CodedOutputStream out, String message, String field, long value) throws IOException {
+        out.writeInt64(schema.get(message).get(field).number, value);
+    }
+
+    private static void writeBytes(CodedOutputStream out, String message, String field, byte[] value) throws IOException {
+        out.writeByteArray(schema.get(message).get(field).number, value);
+    }
+
+    private static byte[] write(HttpBody body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,197 @@
+package net.uattest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RateLimiterTest {
+    private static final int UID = 10_001;
+    private static final String PROJECT = "com.example.app";
+
+    private long now = TimeUnit.SECONDS.toNanos(100);
+
+    @Test
+    public void burstThenSteadyRate() {
+        RateLimiter limiter = limiter(5, 1_000);
+
+        assertEquals(5, drain(limiter, UID, PROJECT));
+
+        // One token every 200ms after the burst.
+        advance(199);
+        assertFalse(limiter.tryAcquire(UID, PROJECT));
+        advance(1);
+        assertTrue(limiter.tryAcquire(UID, PROJECT));
+        assertFalse(limiter.tryAcquire(UID, PROJECT));
+        int granted = 0;
+        for (int i = 0; i < 50; i++) {
+            advance(200);
+            granted += drain(limiter, UID, PROJECT);
+        }
+        assertEquals(50, granted);
+
+        // A full window of idleness restores the whole burst, and no more.
+        advance(1_000);
+        assertEquals(5, drain(limiter, UID, PROJECT));
+    }
+
+    @Test
+    public void callersAndProjectsHaveSeparateBuckets() {
+        RateLimiter limiter = limiter(2, 1_000);
+
+        assertEquals(2, drain(limiter, UID, PROJECT));
+        assertEquals(2, drain(limiter, UID + 1, PROJECT));
+        assertEquals(2, drain(limiter, UID, "com.example.other"));
+        // Alternating projects never resets either bucket.
+        assertFalse(limiter.tryAcquire(UID, PROJECT));
+        assertFalse(limiter.tryAcquire(UID, "com.example.other"));
+    }
+
+    @Test
+    public void refundsCallerWhenBackendRejects() {
+        RateLimiter limiter = limiter(5, 1_000);
+        limiter.setBackendLimit("slow", 1, 1_000);
+
+        assertTrue(limiter.tryAcquire(UID, PROJECT, "slow"));
+        assertFalse(limiter.tryAcquire(UID, PROJECT, "slow"));
+        assertFalse(limiter.tryAcquire(UID, PROJECT, "slow"));
+
+        // Only the one accepted request was charged to the caller.
+        assertEquals(4, drain(limiter, UID, PROJECT));
+    }
+
+    @Test
+    public void backendWithoutLimitOnlyChargesCaller() {
+        RateLimiter limiter = limiter(3, 1_000);
+        limiter.setBackendLimit("slow", 1, 1_000);
+
+        assertTrue(limiter.tryAcquire(UID, PROJECT, "fast"));
+        assertTrue(limiter.tryAcquire(UID, PROJECT, "fast"));
+        assertTrue(limiter.tryAcquire(UID, PROJECT, "slow"));
+        assertFalse(limiter.tryAcquire(UID, PROJECT, "fast"));
+    }
+
+    @Test
+    public void evictionAtMaxBucketsKeepsThrottledCaller() {
+        RateLimiter limiter = new RateLimiter(5, 1_000, 3, () -> now);
+        assertEquals(5, drain(limiter, UID, PROJECT));
+        assertTrue(limiter.tryAcquire(UID + 1, PROJECT));
+        assertTrue(limiter.tryAcquire(UID + 2, PROJECT));
+        assertEquals(3, limiter.size());
+
+        for (int i = 3; i < 20; i++) {
+            assertTrue(limiter.tryAcquire(UID + i, PROJECT));
+            assertTrue(limiter.size() <= 3);
+            // The throttled caller has the latest tat, so it is never the one evicted.
+            assertFalse(limiter.tryAcquire(UID, PROJECT));
+        }
+    }
+
+    @Test
+    public void expiredBucketsAreSwept() {
+        RateLimiter limiter = limiter(5, 1_000);
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(UID + i, PROJECT);
+        }
+        assertEquals(10, limiter.size());
+
+        advance(1_000);
+        limiter.tryAcquire(UID, PROJECT);
+
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    public void projectLimitOverridesDefault() {
+        RateLimiter limiter = limiter(2, 1_000);
+        limiter.setProjectLimit(PROJECT, 5, 1_000);
+
+        assertEquals(5, drain(limiter, UID, PROJECT));
+        assertEquals(2, drain(limiter, UID, "com.example.other"));
+    }
+
+    @Test
+    public void changedLimitAppliesToExistingBucketWithoutReset() {
+        RateLimiter limiter = limiter(10, 1_000);
+        assertEquals(3, take(limiter, 3));
+
+        limiter.setProjectLimit(PROJECT, 4, 1_000);
+
+        // The 300ms already used carries over: two more fit in the tighter 4/s burst, not four.
+        assertEquals(2, drain(limiter, UID, PROJECT));
+        advance(250);
+        assertEquals(1, drain(limiter, UID, PROJECT));
+    }
+
+    @Test
+    public void concurrentCallersNeverExceedBurst() throws Exception {
+        RateLimiter limiter = limiter(50, 1_000);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1_000; i++) {
+                    if (limiter.tryAcquire(UID, PROJECT)) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(50, granted.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidLimit() {
+        limiter(5, 1_000).setProjectLimit(PROJECT, 0, 1_000);
+    }
+
+    private RateLimiter limiter(int maxTokens, long windowMs) {
+        return new RateLimiter(maxTokens, windowMs, 4096, () -> now);
+    }
+
+    private int take(RateLimiter limiter, int count) {
+        int granted = 0;
+        for (int i = 0; i < count; i++) {
+            if (limiter.tryAcquire(UID, PROJECT)) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    /** Acquires until rejected at the current time; returns how many were granted. */
+    private static int drain(RateLimiter limiter, int uid, String projectId) {
+        int granted = 0;
+        while (limiter.tryAcquire(uid, projectId)) {
+            granted++;
+            if (granted > 10_000) {
+                throw new AssertionError("Limiter never rejected");
+            }
+        }
+        return granted;
+    }
+
+    private void advance(long ms) {
+        now += TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+}